@@ -0,0 +1,202 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Bus gains and ducking driven on the audio thread of a Yanap, with players whose active voices are set by the test
+public class AudioBusesTest {
+
+    private static final float DELTA = 1e-6f;
+
+    private Yanap yanap;
+    private AudioBuses buses;
+    private TestPlayer music;
+    private TestPlayer voice;
+
+    // Player doing nothing but counting its gain changes
+    private static class TestPlayer extends YanapPlayer {
+        volatile int activeVoices = 0;
+        int gainChanges = 0;
+
+        TestPlayer(Yanap yanap, String uid) {
+            super(yanap, uid, 1f);
+        }
+
+        @Override
+        public void load(AudioBackend.Source source) {
+        }
+
+        @Override
+        public void play() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @Override
+        public int getActiveVoices() {
+            return activeVoices;
+        }
+
+        @Override
+        void onOutputGainChanged() {
+            gainChanges++;
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        FakeAudioBackend.install();
+        yanap = new Yanap(new File(System.getProperty("java.io.tmpdir")));
+        buses = new AudioBuses(yanap.getAudioThread());
+        music = new TestPlayer(yanap, "bus-music");
+        voice = new TestPlayer(yanap, "bus-voice");
+        onAudioThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                buses.attach(music, buses.get(AudioBuses.MUSIC));
+                buses.attach(voice, buses.get(AudioBuses.VOICE));
+                return null;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        yanap.destroy();
+    }
+
+    // AudioBuses is audio thread only
+    private <T> T onAudioThread(Callable<T> call) throws Exception {
+        FutureTask<T> task = new FutureTask<T>(call);
+        yanap.getAudioThread().enqueue(task);
+        return task.get(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private float gainOf(final TestPlayer player) throws Exception {
+        return onAudioThread(new Callable<Float>() {
+            @Override
+            public Float call() {
+                return player.outputGain();
+            }
+        });
+    }
+
+    private boolean setDucking(final float gain, final long attackMs, final long releaseMs) throws Exception {
+        return onAudioThread(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return buses.setDucking(AudioBuses.VOICE, AudioBuses.MUSIC, gain, attackMs, releaseMs);
+            }
+        });
+    }
+
+    private boolean awaitGain(TestPlayer player, float gain) throws Exception {
+        long deadline = System.currentTimeMillis() + FakeCallback.TIMEOUT_MS;
+        while (Math.abs(gainOf(player) - gain) > DELTA) {
+            if (System.currentTimeMillis() > deadline) { return false; }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    // -------------------------------
+    // ------------ Tests ------------
+    // -------------------------------
+
+    @Test
+    public void busAndMasterGainsAreApplied() throws Exception {
+        int changes = onAudioThread(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                buses.configure(AudioBuses.MUSIC, 0.5f, false);
+                buses.configure(AudioBuses.MASTER, 0.5f, false);
+                return music.gainChanges;
+            }
+        });
+        assertEquals(2, changes);
+        assertEquals(0.25f, gainOf(music), DELTA);
+        assertEquals(0.5f, gainOf(voice), DELTA);
+
+        onAudioThread(new Callable<Void>() {
+            @Override
+            public Void call() {
+                buses.configure(AudioBuses.MUSIC, 0.5f, true);
+                return null;
+            }
+        });
+        assertEquals(0f, gainOf(music), DELTA);
+    }
+
+    @Test
+    public void unknownBusIsRejected() throws Exception {
+        assertFalse(onAudioThread(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return buses.setDucking("noSuchBus", AudioBuses.MUSIC, 0.5f, 0, 0);
+            }
+        }));
+    }
+
+    @Test
+    public void duckedWhileTheTriggerPlays() throws Exception {
+        assertTrue(setDucking(0.25f, 40, 40));
+        assertEquals(1f, gainOf(music), DELTA);
+        voice.activeVoices = 1;
+        assertTrue(awaitGain(music, 0.25f));
+        assertEquals(1f, gainOf(voice), DELTA);
+        voice.activeVoices = 0;
+        assertTrue(awaitGain(music, 1f));
+    }
+
+    // Removing the rule while ducked ramps the target back, even with the trigger still playing
+    @Test
+    public void removedRuleRestoresTheTarget() throws Exception {
+        assertTrue(setDucking(0.25f, 0, 0));
+        voice.activeVoices = 1;
+        assertTrue(awaitGain(music, 0.25f));
+        assertTrue(setDucking(1f, 0, 60));
+        assertTrue(awaitGain(music, 1f));
+    }
+
+    // Removed in the middle of a slow release: the rest of the ramp uses the release time of the removal
+    @Test
+    public void ruleRemovedWhileReleasingRestoresTheTarget() throws Exception {
+        assertTrue(setDucking(0.25f, 0, 600000));
+        voice.activeVoices = 1;
+        assertTrue(awaitGain(music, 0.25f));
+        voice.activeVoices = 0;
+        Thread.sleep(50);
+        assertTrue(gainOf(music) < 0.5f);
+        assertTrue(setDucking(1f, 0, 60));
+        assertTrue(awaitGain(music, 1f));
+
+        // the rule is gone, the trigger does not duck anymore
+        voice.activeVoices = 1;
+        Thread.sleep(50);
+        assertEquals(1f, gainOf(music), DELTA);
+    }
+}
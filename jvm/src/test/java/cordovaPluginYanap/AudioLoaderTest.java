@@ -0,0 +1,163 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+public class AudioLoaderTest {
+
+    // More than the 256 queued loads after which the loader used to run them on the caller, within its bound
+    private static final int LOADS = 600;
+    private static final long OPEN_DELAY_MS = 2;
+
+    private FakeAudioBackend backend;
+    private Yanap yanap;
+    private FakeCallback channel;
+
+    @Before
+    public void setUp() throws Exception {
+        backend = FakeAudioBackend.install();
+        backend.addAsset("loader.snd", FakeAudioBackend.sineFile(44100, 0.05));
+        yanap = new Yanap(new File(System.getProperty("java.io.tmpdir")));
+        channel = new FakeCallback();
+        yanap.execute("messageChannel", new JSONArray(), channel);
+    }
+
+    @After
+    public void tearDown() {
+        backend.openDelayMs = 0;
+        yanap.destroy();
+    }
+
+    private void create(String uid) throws Exception {
+        create(uid, "music");
+    }
+
+    private void create(String uid, String audioType) throws Exception {
+        assertTrue(yanap.execute("createAudioInstance", new JSONArray().put(uid).put(audioType)
+                .put("file:///android_asset/loader.snd").put(new JSONObject()), new FakeCallback()));
+    }
+
+    // -------------------------------
+    // ------------ Tests ------------
+    // -------------------------------
+
+    @Test
+    public void loadBacklogStaysOffTheAudioThread() throws Exception {
+        int opensBefore = backend.opensOnAudioThread.get();
+        backend.openDelayMs = OPEN_DELAY_MS;
+        for (int i = 0; i < LOADS; i++) {
+            create("backlog" + i);
+        }
+
+        // the loads take LOADS * OPEN_DELAY_MS / 2 threads, the audio thread answers meanwhile
+        long syncStart = System.nanoTime();
+        FakeCallback.sync(yanap.getAudioThread());
+        long syncMs = (System.nanoTime() - syncStart) / 1000000;
+        assertTrue("audio thread blocked for " + syncMs + "ms", syncMs < LOADS * OPEN_DELAY_MS / 4);
+
+        for (int i = 0; i < LOADS; i++) {
+            assertTrue("backlog" + i, channel.awaitState("backlog" + i, Yanap.STATE.LOADED));
+        }
+        assertEquals(opensBefore, backend.opensOnAudioThread.get());
+    }
+
+    // Released while queued: the load is skipped, the player still ends RELEASED
+    @Test
+    public void releaseWhileQueued() throws Exception {
+        backend.openDelayMs = OPEN_DELAY_MS;
+        for (int i = 0; i < 100; i++) {
+            create("queued" + i);
+            assertTrue(yanap.execute("release", new JSONArray().put("queued" + i), new FakeCallback()));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue("queued" + i, channel.awaitState("queued" + i, Yanap.STATE.RELEASED));
+            assertEquals(0, Collections.frequency(channel.getStates("queued" + i), "ERROR"));
+        }
+    }
+
+    // Loads past the bound of the queue are reported in ERROR, they do not run on the audio thread
+    @Test
+    public void overflowIsAnError() throws Exception {
+        int opensBefore = backend.opensOnAudioThread.get();
+        int count = AudioLoader.MAX_QUEUED_LOADS + 100;
+        backend.openDelayMs = 20;
+        for (int i = 0; i < count; i++) {
+            create("overflow" + i);
+        }
+        FakeCallback.sync(yanap.getAudioThread());
+        backend.openDelayMs = 0;
+        int errors = 0;
+        for (int i = 0; i < count; i++) {
+            String uid = "overflow" + i;
+            assertTrue(yanap.execute("release", new JSONArray().put(uid), new FakeCallback()));
+            assertTrue(uid, channel.awaitState(uid, Yanap.STATE.RELEASED));
+            errors += Collections.frequency(channel.getStates(uid), "ERROR");
+        }
+        assertTrue("no load rejected", errors > 0);
+        assertEquals(opensBefore, backend.opensOnAudioThread.get());
+    }
+
+    // Mixed sounds of the same file loading at the same time: the file is opened and decoded once
+    @Test
+    public void pcmLoadsOfTheSameFileAreShared() throws Exception {
+        int opensBefore = backend.opens.get();
+        backend.openDelayMs = 50;
+        for (int i = 0; i < 5; i++) {
+            create("sharedPcm" + i, "mixedSound");
+        }
+        for (int i = 0; i < 5; i++) {
+            String uid = "sharedPcm" + i;
+            assertTrue(uid, channel.awaitState(uid, Yanap.STATE.LOADED));
+            assertEquals("[LOADING, LOADED]", channel.getStates(uid).toString());
+        }
+        assertEquals(opensBefore + 1, backend.opens.get());
+        List<String> lengths = new ArrayList<String>();
+        for (JSONArray event : channel.getEvents()) {
+            if (event.getString(0).equals(EventChannel.MSG_FILE_LENGTH)) { lengths.add(event.getString(1)); }
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(lengths.contains("sharedPcm" + i));
+        }
+
+        // the next load opens the file again, the sound is decoded for every player that asks once the load is done
+        create("sharedPcm5", "mixedSound");
+        assertTrue(channel.awaitState("sharedPcm5", Yanap.STATE.LOADED));
+        assertEquals(opensBefore + 2, backend.opens.get());
+        for (int i = 0; i < 6; i++) {
+            assertTrue(yanap.execute("release", new JSONArray().put("sharedPcm" + i), new FakeCallback()));
+            assertTrue(channel.awaitState("sharedPcm" + i, Yanap.STATE.RELEASED));
+        }
+    }
+
+    // The first player is released while loading: the players waiting for its sound load the file themselves
+    @Test
+    public void sharedLoadOfAReleasedPlayer() throws Exception {
+        backend.openDelayMs = 50;
+        create("sharedLeader", "mixedSound");
+        create("sharedWaiter", "mixedSound");
+        assertTrue(yanap.execute("release", new JSONArray().put("sharedLeader"), new FakeCallback()));
+        assertTrue(channel.awaitState("sharedLeader", Yanap.STATE.RELEASED));
+        assertTrue(channel.awaitState("sharedWaiter", Yanap.STATE.LOADED));
+        assertTrue(yanap.execute("release", new JSONArray().put("sharedWaiter"), new FakeCallback()));
+        assertTrue(channel.awaitState("sharedWaiter", Yanap.STATE.RELEASED));
+    }
+}
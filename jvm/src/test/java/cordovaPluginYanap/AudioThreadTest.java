@@ -0,0 +1,229 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+public class AudioThreadTest {
+
+    private AudioThread audioThread;
+
+    @Before
+    public void setUp() {
+        FakeAudioBackend.install();
+        audioThread = new AudioThread();
+    }
+
+    @After
+    public void tearDown() {
+        audioThread.quit();
+    }
+
+    private static Runnable append(final List<String> ran, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                ran.add(name);
+            }
+        };
+    }
+
+    // Keeps the audio thread busy until `release` counts down
+    private Runnable block(final CountDownLatch started, final CountDownLatch release) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+    }
+
+    // -------------------------------
+    // ------------ Tests ------------
+    // -------------------------------
+
+    @Test
+    public void commandsRunInOrder() throws Exception {
+        List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        for (int i = 0; i < 100; i++) {
+            audioThread.enqueue(append(ran, "command" + i));
+        }
+        FakeCallback.sync(audioThread);
+        assertEquals(100, ran.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("command" + i, ran.get(i));
+        }
+    }
+
+    @Test
+    public void urgentCommandsOvertakePendingCommands() throws Exception {
+        List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        audioThread.enqueue(block(started, release));
+        assertTrue(started.await(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < 100; i++) {
+            audioThread.enqueue(append(ran, "command" + i));
+        }
+        audioThread.enqueueUrgent(append(ran, "urgent0"));
+        audioThread.enqueueUrgent(append(ran, "urgent1"));
+        release.countDown();
+        FakeCallback.sync(audioThread);
+        assertEquals(102, ran.size());
+        assertEquals("urgent0", ran.get(0));
+        assertEquals("urgent1", ran.get(1));
+        assertEquals("command0", ran.get(2));
+    }
+
+    @Test
+    public void urgentCommandsRunBeforeDueTimers() throws Exception {
+        List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        audioThread.postDelayed(block(started, release), 0);
+        assertTrue(started.await(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        audioThread.postDelayed(append(ran, "timer"), 0);
+        audioThread.enqueueUrgent(append(ran, "urgent"));
+        release.countDown();
+        FakeCallback.sync(audioThread);
+        Thread.sleep(10);
+        assertEquals("[urgent, timer]", ran.toString());
+    }
+
+    @Test
+    public void failingCommandDoesNotStopTheThread() throws Exception {
+        List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        audioThread.enqueueUrgent(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected by the test");
+            }
+        });
+        audioThread.enqueue(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected by the test");
+            }
+        });
+        audioThread.enqueue(append(ran, "after"));
+        FakeCallback.sync(audioThread);
+        assertEquals("[after]", ran.toString());
+    }
+
+    // -------------------------------
+    // ----------- Stress ------------
+    // -------------------------------
+
+    private static final int PRODUCERS = 8;
+    private static final int COMMANDS_PER_PRODUCER = 20000;
+
+    // Nothing lost, each producer's commands in order, one command at a time on the audio thread
+    @Test
+    public void concurrentProducers() throws Exception {
+        final int[] lastSeen = new int[PRODUCERS];
+        Arrays.fill(lastSeen, -1);
+        final AtomicInteger running = new AtomicInteger(0);
+        final AtomicInteger outOfOrder = new AtomicInteger(0);
+        final AtomicInteger overlapping = new AtomicInteger(0);
+        final AtomicInteger urgentRan = new AtomicInteger(0);
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        List<Future<?>> producers = new ArrayList<Future<?>>();
+        try {
+            for (int p = 0; p < PRODUCERS; p++) {
+                final int producer = p;
+                producers.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = 0; i < COMMANDS_PER_PRODUCER; i++) {
+                            final int sequence = i;
+                            audioThread.enqueue(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (running.incrementAndGet() != 1) { overlapping.incrementAndGet(); }
+                                    if (!audioThread.isCurrentThread()) { overlapping.incrementAndGet(); }
+                                    if (lastSeen[producer] != sequence - 1) { outOfOrder.incrementAndGet(); }
+                                    lastSeen[producer] = sequence; // plain array: only the audio thread writes it
+                                    running.decrementAndGet();
+                                }
+                            });
+                            if (i % 100 == 0) {
+                                audioThread.enqueueUrgent(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        if (running.incrementAndGet() != 1) { overlapping.incrementAndGet(); }
+                                        urgentRan.incrementAndGet();
+                                        running.decrementAndGet();
+                                    }
+                                });
+                            }
+                        }
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> producer : producers) {
+                producer.get(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            }
+            FakeCallback.sync(audioThread);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, outOfOrder.get());
+        assertEquals(0, overlapping.get());
+        assertEquals(PRODUCERS * COMMANDS_PER_PRODUCER / 100, urgentRan.get());
+        for (int p = 0; p < PRODUCERS; p++) {
+            assertEquals(COMMANDS_PER_PRODUCER - 1, lastSeen[p]);
+        }
+    }
+
+    // Commands enqueued before quit() still run, the ones enqueued after it are dropped
+    @Test
+    public void quitRunsTheCommandsAlreadyEnqueued() throws Exception {
+        List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        audioThread.enqueue(block(started, release));
+        assertTrue(started.await(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        audioThread.enqueue(append(ran, "before"));
+        audioThread.quit();
+        audioThread.enqueue(append(ran, "after"));
+        release.countDown();
+        Thread.sleep(50);
+        audioThread.enqueue(append(ran, "later"));
+        Thread.sleep(50);
+        assertEquals("[before]", ran.toString());
+    }
+}
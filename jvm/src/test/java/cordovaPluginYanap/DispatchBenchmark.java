@@ -0,0 +1,97 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Cost of calling a player method from its action name: the reflective lookup and invoke the plugin used
+// before the opcode table, against Yanap.opcode() and a direct interface call. Run it with `-prof gc` to
+// compare the garbage per call.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({ "play", "stop", "release" })
+    public String action;
+
+    private final CountingPlayer player = new CountingPlayer();
+    private int playOpcode;
+    private int stopOpcode;
+    private int releaseOpcode;
+
+    // Does nothing but count, so that only the dispatch is measured
+    private static class CountingPlayer implements IYanapPlayer {
+        int calls = 0;
+
+        @Override
+        public void play() {
+            calls++;
+        }
+
+        @Override
+        public void stop() {
+            calls++;
+        }
+
+        @Override
+        public void setVolume(float volume1, float volume2) {
+            calls++;
+        }
+
+        @Override
+        public void release() {
+            calls++;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        playOpcode = Yanap.opcode("play");
+        stopOpcode = Yanap.opcode("stop");
+        releaseOpcode = Yanap.opcode("release");
+    }
+
+    // Previous dispatch: a lookup and a Method.invoke per call
+    @Benchmark
+    public int reflection() throws Exception {
+        Method method = IYanapPlayer.class.getMethod(action);
+        method.invoke(player);
+        return player.calls;
+    }
+
+    @Benchmark
+    public int opcode() {
+        int opcode = Yanap.opcode(action);
+        if (opcode == playOpcode) {
+            player.play();
+        } else if (opcode == stopOpcode) {
+            player.stop();
+        } else if (opcode == releaseOpcode) {
+            player.release();
+        }
+        return player.calls;
+    }
+}
@@ -0,0 +1,101 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Cost of emitting a status update, sent right away (flushInterval 0) or buffered, with and without coalescing.
+// Updates cycle over INSTANCES audio instances.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventChannelBenchmark {
+
+    // Constant(s)
+    final private static int INSTANCES = 16;
+
+    @Param({ "0", "16" })
+    public long flushInterval;
+
+    @Param({ "false", "true" })
+    public boolean coalesce;
+
+    private AudioThread audioThread;
+    private EventChannel events;
+    private final String[] uids = new String[INSTANCES];
+    private int next = 0;
+
+    // Counts what would be sent to JS
+    private static class CountingCallback implements Yanap.Callback {
+        volatile long sent = 0;
+
+        @Override
+        public void success() {
+        }
+
+        @Override
+        public void success(JSONArray message) {
+        }
+
+        @Override
+        public void success(byte[] message) {
+        }
+
+        @Override
+        public void keep(JSONArray message) {
+            sent += message.length();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        FakeAudioBackend.install();
+        audioThread = new AudioThread();
+        events = new EventChannel(audioThread);
+        events.setCallback(new CountingCallback());
+        events.configure(flushInterval, coalesce, EnumSet.noneOf(Yanap.STATE.class));
+        for (int i = 0; i < INSTANCES; i++) {
+            uids[i] = "instance" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        events.flush();
+        audioThread.quit();
+    }
+
+    @Benchmark
+    public void statusUpdate() {
+        events.statusUpdate(uids[next++ & (INSTANCES - 1)], Yanap.STATE.PLAYING, "");
+    }
+
+    @Benchmark
+    public void fileLength() {
+        events.fileLength(uids[next++ & (INSTANCES - 1)], 1024);
+    }
+}
@@ -0,0 +1,108 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Cost of a JS action from execute() until the audio thread has applied it: opcode lookup, argument parsing,
+// hand-over to the audio thread, player lookup. COMMANDS actions are sent, then the audio thread is waited for.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecuteBenchmark {
+
+    // Constant(s)
+    final private static int COMMANDS = 100;
+
+    private Yanap yanap;
+    private final FakeCallback callback = new FakeCallback();
+    private final JSONArray noArgs = new JSONArray();
+    private JSONArray setVolumeByUid;
+    private JSONArray setVolumeByHandle;
+    private JSONArray batch;
+
+    @Setup
+    public void setUp() throws Exception {
+        FakeAudioBackend backend = FakeAudioBackend.install();
+        backend.addAsset("bench.snd", FakeAudioBackend.sineFile(44100, 1));
+        yanap = new Yanap(new File(System.getProperty("java.io.tmpdir")));
+        FakeCallback channel = new FakeCallback();
+        yanap.execute("messageChannel", noArgs, channel);
+        yanap.execute("createAudioInstance", new JSONArray().put("music").put("music")
+                .put("file:///android_asset/bench.snd").put(new JSONObject()).put(1), callback);
+        if (!channel.awaitState("music", Yanap.STATE.LOADED)) {
+            throw new IllegalStateException("not loaded");
+        }
+        yanap.execute("messageChannel", noArgs, null); // events are dropped from now on
+
+        setVolumeByUid = new JSONArray().put("music").put(0.5).put(0.5);
+        setVolumeByHandle = new JSONArray().put(1).put(0.5).put(0.5);
+        JSONArray commands = new JSONArray();
+        for (int i = 0; i < COMMANDS; i++) {
+            commands.put(new JSONArray().put("setVolume").put(1).put(0.5).put(0.5));
+        }
+        batch = new JSONArray().put(commands);
+    }
+
+    @TearDown
+    public void tearDown() {
+        yanap.destroy();
+    }
+
+    // Answered on the calling thread
+    @Benchmark
+    public boolean getClock() throws Exception {
+        return yanap.execute("getClock", noArgs, callback);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public void setVolumeByUid() throws Exception {
+        for (int i = 0; i < COMMANDS; i++) {
+            yanap.execute("setVolume", setVolumeByUid, callback);
+        }
+        FakeCallback.sync(yanap.getAudioThread());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public void setVolumeByHandle() throws Exception {
+        for (int i = 0; i < COMMANDS; i++) {
+            yanap.execute("setVolume", setVolumeByHandle, callback);
+        }
+        FakeCallback.sync(yanap.getAudioThread());
+    }
+
+    // Same commands in a single bridge call
+    @Benchmark
+    @OperationsPerInvocation(COMMANDS)
+    public void batchedSetVolume() throws Exception {
+        yanap.execute("batch", batch, callback);
+        FakeCallback.sync(yanap.getAudioThread());
+    }
+}
@@ -0,0 +1,696 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// In-memory AudioBackend for the JVM tests and benchmarks. Audio files are made with audioFile(): a small header
+// followed by 16 bits PCM, which every fake object "decodes" right away. Nothing is played: streams and samples
+// only track their states, outputs count the frames written. Media callbacks run on the last loop created,
+// which is the audio thread of the last Yanap.
+public class FakeAudioBackend implements AudioBackend {
+
+    // Constant(s)
+    final public static int OUTPUT_SAMPLE_RATE = 48000;
+    final private static int HEADER_BYTES = 12;
+    final private static int MAGIC = 0x59414e50; // YANP
+    final private static int DECODE_CHUNK_SAMPLES = 1024;
+
+    private static FakeAudioBackend installed = null;
+
+    private final HashMap<String, byte[]> assets = new HashMap<String, byte[]>();
+    private volatile Loop callbackLoop = null;
+
+    // Counters read by the tests
+    public final AtomicInteger openSources = new AtomicInteger(0);
+    public final AtomicInteger opens = new AtomicInteger(0); // every file opened, closed since or not
+    public final AtomicInteger createdStreams = new AtomicInteger(0);
+    public final AtomicInteger openOutputs = new AtomicInteger(0);
+    public final AtomicLong writtenFrames = new AtomicLong(0);
+    public final AtomicInteger opensOnAudioThread = new AtomicInteger(0); // files are opened by the loader threads
+
+    // Set to make every open wait this long, e.g. to keep loads in flight
+    public volatile long openDelayMs = 0;
+
+    // Single instance given to Yanap.setAudioBackend: the sound pools and the mixer engine are static,
+    // they keep the backend that created them from one test to the next
+    public static synchronized FakeAudioBackend install() {
+        if (installed == null) {
+            installed = new FakeAudioBackend();
+        }
+        Yanap.setAudioBackend(installed);
+        return installed;
+    }
+
+    // -------------------------------
+    // ------------ Files ------------
+    // -------------------------------
+
+    // Content of a fake audio file
+    public static byte[] audioFile(int sampleRate, int channels, short[] samples) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(sampleRate).putInt(channels);
+        buffer.asShortBuffer().put(samples);
+        return buffer.array();
+    }
+
+    // `seconds` of a mono 440Hz sine
+    public static byte[] sineFile(int sampleRate, double seconds) {
+        short[] samples = new short[(int) (sampleRate * seconds)];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (Math.sin(2 * Math.PI * 440 * i / sampleRate) * 16384);
+        }
+        return audioFile(sampleRate, 1, samples);
+    }
+
+    // Available as file:///android_asset/`path`
+    public synchronized void addAsset(String path, byte[] content) {
+        assets.put(path, content);
+    }
+
+    @Override
+    public AudioBackend.Source openAsset(String path) throws IOException {
+        byte[] content;
+        synchronized (this) {
+            content = assets.get(path);
+        }
+        if (content == null) {
+            throw new FileNotFoundException(path);
+        }
+        return open(content);
+    }
+
+    @Override
+    public AudioBackend.Source openFile(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            byte[] content = new byte[(int) file.length()];
+            int offset = 0;
+            int count;
+            while (offset < content.length && (count = input.read(content, offset, content.length - offset)) > 0) {
+                offset += count;
+            }
+            return open(content);
+        } finally {
+            input.close();
+        }
+    }
+
+    private Source open(byte[] content) {
+        long delay = openDelayMs;
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        Loop loop = callbackLoop;
+        if (loop != null && loop.isCurrentThread()) {
+            opensOnAudioThread.incrementAndGet();
+        }
+        openSources.incrementAndGet();
+        opens.incrementAndGet();
+        return new Source(content, 0, content.length, true);
+    }
+
+    @Override
+    public long getPackageStamp() {
+        return 1;
+    }
+
+    private class Source implements AudioBackend.Source {
+        final byte[] content;
+        final int offset;
+        final int length;
+        private final boolean owner;
+        volatile boolean closed = false;
+
+        Source(byte[] content, int offset, int length, boolean owner) {
+            this.content = content;
+            this.offset = offset;
+            this.length = length;
+            this.owner = owner;
+        }
+
+        @Override
+        public long getLength() {
+            return length;
+        }
+
+        @Override
+        public AudioBackend.Source subRange(long offset, long length) {
+            return new Source(content, this.offset + (int) offset, (int) length, false);
+        }
+
+        @Override
+        public void close() {
+            if (owner && !closed) {
+                openSources.decrementAndGet();
+            }
+            closed = true;
+        }
+
+        Pcm decode() throws IOException {
+            if (closed) { throw new IOException("source closed"); }
+            ByteBuffer buffer = ByteBuffer.wrap(content, offset, length).slice().order(ByteOrder.LITTLE_ENDIAN);
+            if (length < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                throw new IOException("not a fake audio file");
+            }
+            int sampleRate = buffer.getInt(4);
+            int channels = buffer.getInt(8);
+            buffer.position(HEADER_BYTES);
+            short[] samples = new short[buffer.remaining() / 2];
+            buffer.asShortBuffer().get(samples);
+            return new Pcm(sampleRate, channels, samples);
+        }
+    }
+
+    private static class Pcm {
+        final int sampleRate;
+        final int channels;
+        final short[] samples;
+
+        Pcm(int sampleRate, int channels, short[] samples) {
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.samples = samples;
+        }
+
+        int durationMs() {
+            return (int) ((long) samples.length / channels * 1000 / sampleRate);
+        }
+    }
+
+    private static Pcm decode(AudioBackend.Source source) throws IOException {
+        return ((Source) source).decode();
+    }
+
+    // -------------------------------
+    // ----------- Streams -----------
+    // -------------------------------
+
+    @Override
+    public AudioBackend.Stream createStream() {
+        createdStreams.incrementAndGet();
+        return new Stream();
+    }
+
+    @Override
+    public boolean supportsGaplessLoop() {
+        return true;
+    }
+
+    // Completes only when complete() is called
+    public class Stream implements AudioBackend.Stream {
+        private Listener listener;
+        private Pcm pcm = null;
+        private boolean prepared = false;
+        private boolean playing = false;
+        private boolean looping = false;
+        private int positionMs = 0;
+        private Stream next = null;
+
+        @Override
+        public void setListener(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public synchronized void setDataSource(AudioBackend.Source source) throws IOException {
+            pcm = decode(source);
+        }
+
+        @Override
+        public void prepare() throws IOException {
+            synchronized (this) {
+                if (pcm == null) { throw new IllegalStateException("no data source"); }
+                prepared = true;
+            }
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (listener != null) { listener.onPrepared(Stream.this); }
+                }
+            });
+        }
+
+        @Override
+        public synchronized void start() {
+            if (!prepared) { throw new IllegalStateException("not prepared"); }
+            playing = true;
+        }
+
+        @Override
+        public synchronized void pause() {
+            playing = false;
+        }
+
+        @Override
+        public synchronized void stop() {
+            playing = false;
+            prepared = false;
+        }
+
+        @Override
+        public synchronized boolean isPlaying() {
+            return playing;
+        }
+
+        @Override
+        public synchronized void seekTo(int positionMs) {
+            this.positionMs = positionMs;
+        }
+
+        @Override
+        public synchronized int getDuration() {
+            return pcm == null ? -1 : pcm.durationMs();
+        }
+
+        @Override
+        public synchronized int getCurrentPosition() {
+            return positionMs;
+        }
+
+        @Override
+        public void setVolume(float volume1, float volume2) {
+        }
+
+        @Override
+        public synchronized void setLooping(boolean looping) {
+            this.looping = looping;
+        }
+
+        @Override
+        public synchronized void setNext(AudioBackend.Stream next) {
+            this.next = (Stream) next;
+        }
+
+        @Override
+        public synchronized void reset() {
+            pcm = null;
+            prepared = false;
+            playing = false;
+            looping = false;
+            positionMs = 0;
+            next = null;
+        }
+
+        @Override
+        public synchronized void release() {
+            reset();
+        }
+
+        // Reaches the end of the file: starts the next stream, then calls the listener on the callback loop
+        public void complete() {
+            synchronized (this) {
+                if (looping) { return; }
+                playing = false;
+                positionMs = pcm == null ? 0 : pcm.durationMs();
+                if (next != null) {
+                    next.start();
+                }
+            }
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (listener != null) { listener.onCompletion(Stream.this); }
+                }
+            });
+        }
+    }
+
+    // -------------------------------
+    // ----------- Samples -----------
+    // -------------------------------
+
+    @Override
+    public AudioBackend.Samples createSamples(int maxStreams, int usage, int contentType) {
+        return new Samples(maxStreams);
+    }
+
+    // Streams never end by themselves, they are taken until stopped
+    public class Samples implements AudioBackend.Samples {
+        private final int maxStreams;
+        private Listener listener;
+        private int nextSampleId = 1;
+        private int nextStreamId = 1;
+        private final HashMap<Integer, Pcm> loaded = new HashMap<Integer, Pcm>();
+        private final ArrayList<Integer> streams = new ArrayList<Integer>();
+
+        Samples(int maxStreams) {
+            this.maxStreams = maxStreams;
+        }
+
+        @Override
+        public void setListener(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public int load(AudioBackend.Source source, int priority) {
+            final int sampleId;
+            int status = 0;
+            synchronized (this) {
+                sampleId = nextSampleId++;
+                try {
+                    loaded.put(sampleId, decode(source));
+                } catch (IOException e) {
+                    status = 1;
+                }
+            }
+            final int loadStatus = status;
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    if (listener != null) { listener.onLoadComplete(sampleId, loadStatus); }
+                }
+            });
+            return sampleId;
+        }
+
+        @Override
+        public synchronized void unload(int sampleId) {
+            loaded.remove(sampleId);
+        }
+
+        @Override
+        public synchronized int play(int sampleId, float volume1, float volume2, int priority) {
+            if (!loaded.containsKey(sampleId) || streams.size() >= maxStreams) { return 0; }
+            int streamId = nextStreamId++;
+            streams.add(streamId);
+            return streamId;
+        }
+
+        @Override
+        public synchronized void stop(int streamId) {
+            streams.remove(Integer.valueOf(streamId));
+        }
+
+        @Override
+        public void setVolume(int streamId, float volume1, float volume2) {
+        }
+
+        @Override
+        public synchronized void release() {
+            loaded.clear();
+            streams.clear();
+        }
+
+        public synchronized int getActiveStreams() {
+            return streams.size();
+        }
+    }
+
+    // -------------------------------
+    // ---------- PCM output ---------
+    // -------------------------------
+
+    @Override
+    public AudioBackend.Output createOutput(int sampleRate, int channels, int bufferFrames) {
+        if (sampleRate <= 0 || channels < 1 || channels > 2) {
+            throw new IllegalArgumentException("unsupported format " + sampleRate + "Hz " + channels + " channels");
+        }
+        openOutputs.incrementAndGet();
+        return new Output(channels);
+    }
+
+    @Override
+    public int getOutputSampleRate() {
+        return OUTPUT_SAMPLE_RATE;
+    }
+
+    // Accepts everything right away, "plays" what was written
+    public class Output implements AudioBackend.Output {
+        private final int channels;
+        private long frames = 0;
+        private boolean released = false;
+
+        Output(int channels) {
+            this.channels = channels;
+        }
+
+        @Override
+        public void play() {
+            check();
+        }
+
+        @Override
+        public void pause() {
+            check();
+        }
+
+        @Override
+        public void stop() {
+            check();
+        }
+
+        @Override
+        public synchronized void flush() {
+            check();
+            frames = 0;
+        }
+
+        @Override
+        public int write(short[] samples, int offset, int count) {
+            synchronized (this) {
+                check();
+                frames += count / channels;
+            }
+            writtenFrames.addAndGet(count / channels);
+            return count;
+        }
+
+        @Override
+        public void setVolume(float volume1, float volume2) {
+        }
+
+        @Override
+        public synchronized long getPlaybackFrames() {
+            return frames;
+        }
+
+        @Override
+        public synchronized void release() {
+            if (!released) {
+                openOutputs.decrementAndGet();
+            }
+            released = true;
+        }
+
+        private synchronized void check() {
+            if (released) { throw new IllegalStateException("output released"); }
+        }
+    }
+
+    // -------------------------------
+    // ---------- PCM decoding -------
+    // -------------------------------
+
+    @Override
+    public AudioBackend.Decoder createDecoder(AudioBackend.Source source) throws IOException {
+        return new Decoder(decode(source));
+    }
+
+    @Override
+    public Format probe(AudioBackend.Source source) {
+        try {
+            Pcm pcm = decode(source);
+            return new Format(pcm.sampleRate, pcm.channels, pcm.durationMs() * 1000L);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean supportsDecoding() {
+        return true;
+    }
+
+    // Hands the samples out DECODE_CHUNK_SAMPLES at a time
+    private static class Decoder implements AudioBackend.Decoder {
+        private final Pcm pcm;
+        private int position = 0;
+
+        Decoder(Pcm pcm) {
+            this.pcm = pcm;
+        }
+
+        @Override
+        public int getSampleRate() {
+            return pcm.sampleRate;
+        }
+
+        @Override
+        public int getChannels() {
+            return pcm.channels;
+        }
+
+        @Override
+        public long getDurationUs() {
+            return pcm.durationMs() * 1000L;
+        }
+
+        @Override
+        public ShortBuffer read() {
+            if (position >= pcm.samples.length) { return null; }
+            int count = Math.min(DECODE_CHUNK_SAMPLES, pcm.samples.length - position);
+            ShortBuffer chunk = ShortBuffer.wrap(pcm.samples, position, count);
+            position += count;
+            return chunk.slice();
+        }
+
+        @Override
+        public void seekToStart() {
+            position = 0;
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    // -------------------------------
+    // ----------- Threads -----------
+    // -------------------------------
+
+    @Override
+    public AudioBackend.Loop createLoop(String name) {
+        Loop loop = new Loop(name);
+        callbackLoop = loop;
+        return loop;
+    }
+
+    @Override
+    public void setThreadPriority(int priority) {
+    }
+
+    // Media callbacks posted on the audio thread, run right away if there is none
+    private void post(Runnable callback) {
+        Loop loop = callbackLoop;
+        if (loop == null) {
+            callback.run();
+        } else {
+            loop.post(callback);
+        }
+    }
+
+    // Thread running its callbacks by due time, then in posting order
+    public static class Loop implements AudioBackend.Loop, Runnable {
+        private final Thread thread;
+        private final ArrayList<Callback> callbacks = new ArrayList<Callback>(); // by due time, then posting order
+        private boolean quit = false;
+
+        private static class Callback {
+            Runnable runnable;
+            long timeNanos;
+        }
+
+        Loop(String name) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void post(Runnable runnable) {
+            postDelayed(runnable, 0);
+        }
+
+        @Override
+        public synchronized void postAtFront(Runnable runnable) {
+            if (quit) { return; }
+            Callback callback = new Callback();
+            callback.runnable = runnable;
+            callback.timeNanos = callbacks.isEmpty() ? System.nanoTime() : Math.min(System.nanoTime(), callbacks.get(0).timeNanos);
+            callbacks.add(0, callback);
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void postDelayed(Runnable runnable, long delayMs) {
+            if (quit) { return; }
+            Callback callback = new Callback();
+            callback.runnable = runnable;
+            callback.timeNanos = System.nanoTime() + Math.max(0, delayMs) * 1000000L;
+            int index = callbacks.size();
+            while (index > 0 && callbacks.get(index - 1).timeNanos > callback.timeNanos) {
+                index--;
+            }
+            callbacks.add(index, callback);
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void removeCallbacks(Runnable runnable) {
+            Iterator<Callback> iterator = callbacks.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().runnable == runnable) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        @Override
+        public boolean isCurrentThread() {
+            return Thread.currentThread() == thread;
+        }
+
+        @Override
+        public synchronized void quit() {
+            quit = true;
+            callbacks.clear();
+            notifyAll();
+        }
+
+        public void join() throws InterruptedException {
+            thread.join();
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable runnable;
+                synchronized (this) {
+                    while (!quit && (callbacks.isEmpty() || callbacks.get(0).timeNanos > System.nanoTime())) {
+                        try {
+                            if (callbacks.isEmpty()) {
+                                wait();
+                            } else {
+                                long delay = callbacks.get(0).timeNanos - System.nanoTime();
+                                wait(Math.max(1, delay / 1000000));
+                            }
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (quit) { return; }
+                    runnable = callbacks.remove(0).runnable;
+                }
+                try {
+                    runnable.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace(); // the loop keeps running, the test waiting for the callback fails
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONArray;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Yanap.Callback keeping what it receives. Used as the message channel, it records every event tuple
+// ([msgType, audioUid, value, additionalInfo]) and lets the tests wait for a given one.
+public class FakeCallback implements Yanap.Callback {
+
+    // Constant(s)
+    final public static long TIMEOUT_MS = 5000;
+
+    private final ArrayList<JSONArray> events = new ArrayList<JSONArray>();
+    private int successes = 0;
+    private Object result = null;
+
+    // -------------------------------
+    // ------- Yanap.Callback --------
+    // -------------------------------
+
+    @Override
+    public synchronized void success() {
+        successes++;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void success(JSONArray message) {
+        successes++;
+        result = message;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void success(byte[] message) {
+        successes++;
+        result = message;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void keep(JSONArray message) {
+        for (int i = 0; i < message.length(); i++) {
+            events.add(message.getJSONArray(i));
+        }
+        notifyAll();
+    }
+
+    // -------------------------------
+    // ----------- Results -----------
+    // -------------------------------
+
+    public synchronized int getSuccesses() {
+        return successes;
+    }
+
+    // Last result of a success call with a message, waits for it
+    public synchronized Object awaitResult() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (result == null && System.currentTimeMillis() < deadline) {
+            wait(Math.max(1, deadline - System.currentTimeMillis()));
+        }
+        return result;
+    }
+
+    // -------------------------------
+    // ----------- Events ------------
+    // -------------------------------
+
+    public synchronized ArrayList<JSONArray> getEvents() {
+        return new ArrayList<JSONArray>(events);
+    }
+
+    // States received by `uid`, in order
+    public synchronized ArrayList<String> getStates(Object uid) {
+        ArrayList<String> states = new ArrayList<String>();
+        for (JSONArray event : events) {
+            if (event.getString(0).equals(EventChannel.MSG_STATUS_UPDATE) && event.get(1).equals(uid)) {
+                states.add(event.getString(2));
+            }
+        }
+        return states;
+    }
+
+    // Returns true once `uid` received `state`, false on timeout
+    public boolean awaitState(Object uid, Yanap.STATE state) throws InterruptedException {
+        return awaitState(uid, state, 1);
+    }
+
+    // Returns true once `uid` received `state` `times` times, false on timeout
+    public synchronized boolean awaitState(Object uid, Yanap.STATE state, int times) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (Collections.frequency(getStates(uid), state.toString()) < times) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) { return false; }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    // Returns the first event of type `msgType`, null on timeout
+    public JSONArray awaitMessage(String msgType) throws InterruptedException {
+        return awaitMessage(msgType, 0);
+    }
+
+    // Returns the event of type `msgType` received after `index` others of that type, null on timeout
+    public synchronized JSONArray awaitMessage(String msgType, int index) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            int seen = 0;
+            for (JSONArray event : events) {
+                if (event.getString(0).equals(msgType) && seen++ == index) { return event; }
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) { return null; }
+            wait(remaining);
+        }
+    }
+
+    // -------------------------------
+    // -------- Audio thread ---------
+    // -------------------------------
+
+    // Waits until every command enqueued on the audio thread before this call has run
+    public static void sync(AudioThread audioThread) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        audioThread.enqueue(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        if (!done.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            throw new AssertionError("audio thread blocked");
+        }
+    }
+}
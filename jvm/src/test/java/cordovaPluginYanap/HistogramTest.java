@@ -0,0 +1,113 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+public class HistogramTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static long bucket(Histogram histogram, int index) throws Exception {
+        return histogram.toJson().getJSONArray("buckets").getLong(index);
+    }
+
+    // -------------------------------
+    // ------------ Tests ------------
+    // -------------------------------
+
+    @Test
+    public void valuesGoToTheBucketOfTheirUpperBound() throws Exception {
+        Histogram histogram = new Histogram();
+        histogram.record(0);
+        histogram.record(0.5);  // bounds are inclusive
+        histogram.record(0.51);
+        histogram.record(3);
+        histogram.record(4);
+        histogram.record(2048);
+        histogram.record(2049); // last bucket, no bound
+        histogram.record(1e6);
+        JSONArray buckets = histogram.toJson().getJSONArray("buckets");
+        assertEquals(14, buckets.length());
+        assertEquals(2, buckets.getLong(0));
+        assertEquals(1, buckets.getLong(1));
+        assertEquals(2, buckets.getLong(3));
+        assertEquals(1, buckets.getLong(12));
+        assertEquals(2, buckets.getLong(13));
+        assertEquals(8, histogram.getCount());
+    }
+
+    @Test
+    public void percentilesAreTheUpperBoundOfTheirBucket() {
+        Histogram histogram = new Histogram();
+        for (int ms = 1; ms <= 100; ms++) {
+            histogram.record(ms);
+        }
+        assertEquals(1, histogram.getPercentile(1), DELTA);     // rank 1: the only value up to 1ms
+        assertEquals(64, histogram.getPercentile(50), DELTA);   // rank 50: values 33 to 64
+        assertEquals(64, histogram.getPercentile(64), DELTA);
+        assertEquals(100, histogram.getPercentile(65), DELTA);  // bucket up to 128, bounded by the max
+        assertEquals(100, histogram.getPercentile(100), DELTA);
+    }
+
+    @Test
+    public void percentilesAboveTheLastBoundAreTheMax() {
+        Histogram histogram = new Histogram();
+        histogram.record(1);
+        histogram.record(5000);
+        assertEquals(1, histogram.getPercentile(50), DELTA);
+        assertEquals(5000, histogram.getPercentile(99), DELTA);
+    }
+
+    @Test
+    public void emptyHistogram() throws Exception {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(50), DELTA);
+        JSONObject json = histogram.toJson();
+        assertEquals(0, json.getLong("count"));
+        assertEquals(0, json.getDouble("mean"), DELTA);
+        assertEquals(0, json.getDouble("max"), DELTA);
+    }
+
+    @Test
+    public void jsonSummary() throws Exception {
+        Histogram histogram = new Histogram();
+        histogram.record(1);
+        histogram.record(2);
+        histogram.record(6);
+        JSONObject json = histogram.toJson();
+        assertEquals(3, json.getLong("count"));
+        assertEquals(3, json.getDouble("mean"), DELTA);
+        assertEquals(6, json.getDouble("max"), DELTA);
+        assertEquals(2, json.getDouble("p50"), DELTA);
+        assertEquals(6, json.getDouble("p95"), DELTA); // bucket up to 8, bounded by the max
+        assertEquals(6, json.getDouble("p99"), DELTA);
+    }
+
+    @Test
+    public void resetClearsEverything() throws Exception {
+        Histogram histogram = new Histogram();
+        histogram.record(10);
+        histogram.record(3000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99), DELTA);
+        assertEquals(0, histogram.toJson().getDouble("max"), DELTA);
+        for (int i = 0; i < 14; i++) {
+            assertEquals(0, bucket(histogram, i));
+        }
+        histogram.record(0.75);
+        assertEquals(1, bucket(histogram, 1));
+        assertEquals(0.75, histogram.getPercentile(50), DELTA);
+    }
+}
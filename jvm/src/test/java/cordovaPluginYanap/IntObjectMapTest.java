@@ -0,0 +1,199 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// The tests keep few enough entries for a new map not to grow. Colliding keys are found by inserting each key
+// alone and reading back its slot, so the tests do not depend on the hash function.
+public class IntObjectMapTest {
+
+    private static final int CAPACITY = new IntObjectMap<String>().capacity();
+
+    // Slot `key` gets in an empty map
+    private static int idealSlot(int key) {
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        map.put(key, "x");
+        return slotOf(map, key);
+    }
+
+    private static int slotOf(IntObjectMap<?> map, int key) {
+        for (int slot = 0; slot < map.capacity(); slot++) {
+            if (map.valueAt(slot) != null && map.keyAt(slot) == key) { return slot; }
+        }
+        return -1;
+    }
+
+    // `count` keys with the ideal slot `slot`
+    private static int[] keysAt(int slot, int count) {
+        int[] keys = new int[count];
+        int found = 0;
+        for (int key = 1; found < count; key++) {
+            if (idealSlot(key) == slot) { keys[found++] = key; }
+        }
+        return keys;
+    }
+
+    private static void assertContainsExactly(IntObjectMap<String> map, int... keys) {
+        assertEquals(keys.length, map.size());
+        int occupied = 0;
+        for (int slot = 0; slot < map.capacity(); slot++) {
+            if (map.valueAt(slot) != null) { occupied++; }
+        }
+        assertEquals(keys.length, occupied);
+        for (int key : keys) {
+            assertEquals("v" + key, map.get(key));
+        }
+    }
+
+    // -------------------------------
+    // ------------ Tests ------------
+    // -------------------------------
+
+    @Test
+    public void putGetRemove() {
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        assertNull(map.put(0, "v0"));
+        assertNull(map.put(-5, "v-5"));
+        assertEquals("v0", map.put(0, "w0"));
+        assertEquals("w0", map.get(0));
+        assertEquals("v-5", map.get(-5));
+        assertTrue(map.containsKey(-5));
+        assertNull(map.get(1));
+        assertEquals(2, map.size());
+        assertEquals("v-5", map.remove(-5));
+        assertNull(map.remove(-5));
+        assertEquals(1, map.size());
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(0));
+    }
+
+    @Test
+    public void nullValuesAreRejected() {
+        try {
+            new IntObjectMap<String>().put(1, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void removalShiftsCollidingEntriesBack() {
+        int[] keys = keysAt(2, 3);
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        for (int key : keys) {
+            map.put(key, "v" + key);
+        }
+        assertEquals(2, slotOf(map, keys[0]));
+        assertEquals(3, slotOf(map, keys[1]));
+        assertEquals(4, slotOf(map, keys[2]));
+
+        map.remove(keys[0]);
+        assertEquals(2, slotOf(map, keys[1]));
+        assertEquals(3, slotOf(map, keys[2]));
+        assertNull(map.valueAt(4));
+        assertContainsExactly(map, keys[1], keys[2]);
+    }
+
+    @Test
+    public void removalFromTheMiddleOfARun() {
+        int[] keys = keysAt(2, 3);
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        for (int key : keys) {
+            map.put(key, "v" + key);
+        }
+        map.remove(keys[1]);
+        assertEquals(2, slotOf(map, keys[0]));
+        assertEquals(3, slotOf(map, keys[2]));
+        assertContainsExactly(map, keys[0], keys[2]);
+    }
+
+    @Test
+    public void removalKeepsEntriesAtTheirIdealSlot() {
+        int a = keysAt(2, 1)[0];
+        int b = keysAt(2, 2)[1];
+        int c = keysAt(3, 1)[0];
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        map.put(a, "v" + a); // slot 2
+        map.put(c, "v" + c); // slot 3
+        map.put(b, "v" + b); // slot 4, pushed by a and c
+        map.remove(a);
+        assertEquals(3, slotOf(map, c)); // at its ideal slot, must not move into the gap
+        assertEquals(2, slotOf(map, b)); // moved into the gap it can reach
+        assertContainsExactly(map, b, c);
+    }
+
+    @Test
+    public void removalShiftsAcrossTheEndOfTheTable() {
+        int[] keys = keysAt(CAPACITY - 1, 3);
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        for (int key : keys) {
+            map.put(key, "v" + key);
+        }
+        assertEquals(CAPACITY - 1, slotOf(map, keys[0]));
+        assertEquals(0, slotOf(map, keys[1]));
+        assertEquals(1, slotOf(map, keys[2]));
+
+        map.remove(keys[0]);
+        assertEquals(CAPACITY - 1, slotOf(map, keys[1]));
+        assertEquals(0, slotOf(map, keys[2]));
+        assertContainsExactly(map, keys[1], keys[2]);
+    }
+
+    @Test
+    public void growKeepsEveryEntry() {
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int key = -500; key < 500; key += 3) {
+            map.put(key, "v" + key);
+            keys.add(key);
+        }
+        assertTrue(map.capacity() >= 2 * keys.size());
+        int[] expected = new int[keys.size()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = keys.get(i);
+        }
+        assertContainsExactly(map, expected);
+    }
+
+    // Few keys in a small table: long runs, wrap-arounds and removals in every position
+    @Test
+    public void matchesHashMapUnderRandomOperations() {
+        Random random = new Random(42);
+        IntObjectMap<String> map = new IntObjectMap<String>();
+        Map<Integer, String> reference = new HashMap<Integer, String>();
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(12) - 4;
+            if (random.nextBoolean()) {
+                assertEquals(reference.put(key, "v" + i), map.put(key, "v" + i));
+            } else {
+                assertEquals(reference.remove(key), map.remove(key));
+            }
+            assertEquals(reference.size(), map.size());
+            if (i % 100 == 0) {
+                for (int k = -4; k < 8; k++) {
+                    assertEquals(reference.get(k), map.get(k));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Cost of LOOKUPS player lookups, per invocation: by UUID in the uid registry, by boxed Integer in a HashMap
+// (as soundIdToSoundPlayer did) and by int handle in an IntObjectMap. A uid is a new String for every call,
+// as parsed from the bridge JSON, so its hash is computed each time. Run it with `-prof gc`:
+// gc.alloc.rate.norm is then the garbage per LOOKUPS operations.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    // Constant(s)
+    final private static int LOOKUPS = 10000;
+
+    @Param({ "16", "256" })
+    public int players;
+
+    private final ConcurrentHashMap<String, Object> byUid = new ConcurrentHashMap<String, Object>();
+    private final HashMap<Integer, Object> byBoxedId = new HashMap<Integer, Object>();
+    private final IntObjectMap<Object> byHandle = new IntObjectMap<Object>();
+    private char[][] uids;
+    private int[] handles;
+
+    @Setup
+    public void setUp() {
+        uids = new char[players][];
+        handles = new int[players];
+        for (int i = 0; i < players; i++) {
+            Object player = new Object();
+            String uid = UUID.randomUUID().toString();
+            uids[i] = uid.toCharArray();
+            handles[i] = 1000 + i; // boxed keys outside the Integer cache
+            byUid.put(uid, player);
+            byBoxedId.put(handles[i], player);
+            byHandle.put(handles[i], player);
+        }
+    }
+
+    @Benchmark
+    public int uid() {
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (byUid.get(new String(uids[i % players])) != null) { found++; }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int boxedId() {
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (byBoxedId.get(handles[i % players]) != null) { found++; }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int handle() {
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (byHandle.get(handles[i % players]) != null) { found++; }
+        }
+        return found;
+    }
+}
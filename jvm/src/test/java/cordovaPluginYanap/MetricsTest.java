@@ -0,0 +1,104 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Metrics are static: every test starts by reading them with a reset
+public class MetricsTest {
+
+    private Yanap yanap;
+    private FakeCallback channel;
+    private int reads = 0;
+
+    @Before
+    public void setUp() throws Exception {
+        FakeAudioBackend backend = FakeAudioBackend.install();
+        backend.addAsset("metrics.snd", FakeAudioBackend.sineFile(44100, 0.5));
+        yanap = new Yanap(new File(System.getProperty("java.io.tmpdir")));
+        channel = new FakeCallback();
+        yanap.execute("messageChannel", new JSONArray(), channel);
+        getMetrics(false, true);
+    }
+
+    @After
+    public void tearDown() {
+        yanap.destroy();
+    }
+
+    private JSONObject getMetrics(boolean instances, boolean reset) throws Exception {
+        assertTrue(yanap.execute("getMetrics", new JSONArray().put(instances).put(reset), new FakeCallback()));
+        JSONArray event = channel.awaitMessage(EventChannel.MSG_METRICS, reads++);
+        assertNotNull(event);
+        return event.getJSONObject(2);
+    }
+
+    private void execute(String action, Object... args) throws Exception {
+        JSONArray array = new JSONArray();
+        for (Object arg : args) {
+            array.put(arg);
+        }
+        assertTrue(yanap.execute(action, array, new FakeCallback()));
+    }
+
+    // -------------------------------
+    // ------------ Tests ------------
+    // -------------------------------
+
+    @Test
+    public void playsAndLatenciesAreCounted() throws Exception {
+        execute("createAudioInstance", "metrics1", "music", "file:///android_asset/metrics.snd", new JSONObject(), 0);
+        assertTrue(channel.awaitState("metrics1", Yanap.STATE.LOADED));
+        execute("play", "metrics1");
+        assertTrue(channel.awaitState("metrics1", Yanap.STATE.PLAYING));
+
+        JSONObject metrics = getMetrics(true, false);
+        assertEquals(1, metrics.getLong("plays"));
+        assertEquals(1, metrics.getJSONObject("playLatency").getLong("count"));
+        assertEquals(1, metrics.getJSONObject("loadTime").getLong("count"));
+        assertEquals(1, metrics.getInt("players"));
+        JSONObject instance = metrics.getJSONObject("instances").getJSONObject("metrics1");
+        assertEquals("PLAYING", instance.getString("state"));
+        assertEquals(1, instance.getLong("plays"));
+        assertTrue(metrics.getLong("bridgeCalls") > 0);
+    }
+
+    @Test
+    public void readingWithResetStartsOver() throws Exception {
+        execute("createAudioInstance", "metrics2", "music", "file:///android_asset/metrics.snd", new JSONObject(), 0);
+        assertTrue(channel.awaitState("metrics2", Yanap.STATE.LOADED));
+        execute("play", "metrics2");
+        assertTrue(channel.awaitState("metrics2", Yanap.STATE.PLAYING));
+
+        JSONObject first = getMetrics(false, true);
+        assertEquals(1, first.getLong("plays"));
+        assertEquals(1, first.getJSONObject("loadTime").getLong("count"));
+
+        JSONObject second = getMetrics(false, false);
+        assertEquals(0, second.getLong("plays"));
+        assertEquals(0, second.getJSONObject("loadTime").getLong("count"));
+        assertEquals(0, second.getJSONObject("playLatency").getLong("count"));
+        assertEquals(0, second.getJSONObject("playLatency").getDouble("max"), 0);
+        // not reset: bridge calls are a running total, and the players are still there
+        assertTrue(second.getLong("bridgeCalls") > first.getLong("bridgeCalls"));
+        assertEquals(1, second.getInt("players"));
+        assertFalse(second.has("instances"));
+    }
+}
@@ -0,0 +1,233 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+public class MixerTest {
+
+    private static final int OUTPUT_RATE = 44100;
+
+    // Mono sound whose frame i is `i * step`
+    private static PcmSound ramp(int sampleRate, int frames, int step) {
+        short[] samples = new short[frames];
+        for (int i = 0; i < frames; i++) {
+            samples[i] = (short) (i * step);
+        }
+        return new PcmSound(samples, 1, sampleRate);
+    }
+
+    private static PcmSound constant(int channels, int frames, short... frame) {
+        short[] samples = new short[frames * channels];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = frame[i % channels];
+        }
+        return new PcmSound(samples, channels, OUTPUT_RATE);
+    }
+
+    private static short[] mix(Mixer mixer, int frames) {
+        short[] output = new short[frames * Mixer.OUTPUT_CHANNELS];
+        mixer.mix(output, frames);
+        return output;
+    }
+
+    // Left channel of `frames` frames mixed in chunks of `chunk` frames, so that wraps also fall on chunk edges
+    private static short[] mixLeft(Mixer mixer, int frames, int chunk) {
+        short[] left = new short[frames];
+        short[] output = new short[chunk * Mixer.OUTPUT_CHANNELS];
+        for (int done = 0; done < frames; done += chunk) {
+            int count = Math.min(chunk, frames - done);
+            mixer.mix(output, count);
+            for (int frame = 0; frame < count; frame++) {
+                left[done + frame] = output[frame * 2];
+            }
+        }
+        return left;
+    }
+
+    private static class LoopCounter implements Mixer.LoopListener {
+        int loops = 0;
+
+        @Override
+        public void onLoop(int voiceId) {
+            loops++;
+        }
+    }
+
+    // -------------------------------
+    // ------------ Tests ------------
+    // -------------------------------
+
+    // 22.05kHz played at 44.1kHz: every other output frame is interpolated halfway between two source frames
+    @Test
+    public void resamplesToTheOutputRate() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 4, Mixer.STEAL_OLDEST);
+        mixer.play(ramp(22050, 16, 100), 1f, 1f);
+        short[] output = mix(mixer, 20);
+        for (int frame = 0; frame < 20; frame++) {
+            assertEquals("frame " + frame, frame * 50, output[frame * 2]);
+        }
+    }
+
+    @Test
+    public void appliesTheGainOfEachChannel() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 4, Mixer.STEAL_OLDEST);
+        mixer.play(constant(2, 8, (short) 1000, (short) 2000), 0.5f, 0.25f);
+        short[] output = mix(mixer, 4);
+        for (int frame = 0; frame < 4; frame++) {
+            assertEquals(500, output[frame * 2]);
+            assertEquals(500, output[frame * 2 + 1]);
+        }
+    }
+
+    @Test
+    public void monoIsPlayedOnBothChannels() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 4, Mixer.STEAL_OLDEST);
+        mixer.play(ramp(OUTPUT_RATE, 8, 10), 1f, 1f);
+        short[] output = mix(mixer, 8);
+        for (int frame = 0; frame < 8; frame++) {
+            assertEquals(frame * 10, output[frame * 2]);
+            assertEquals(frame * 10, output[frame * 2 + 1]);
+        }
+    }
+
+    // Voices are summed in floats and clipped once to 16 bits
+    @Test
+    public void clipsTheSum() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 4, Mixer.STEAL_OLDEST);
+        PcmSound loud = constant(2, 8, (short) 30000, (short) -30000);
+        mixer.play(loud, 1f, 1f);
+        mixer.play(loud, 1f, 1f);
+        short[] output = mix(mixer, 4);
+        for (int frame = 0; frame < 4; frame++) {
+            assertEquals(Short.MAX_VALUE, output[frame * 2]);
+            assertEquals(Short.MIN_VALUE, output[frame * 2 + 1]);
+        }
+        assertEquals(Short.MAX_VALUE, Mixer.clip(32767.9f));
+        assertEquals(Short.MIN_VALUE, Mixer.clip(-40000f));
+    }
+
+    @Test
+    public void stealsTheOldestVoice() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 2, Mixer.STEAL_OLDEST);
+        PcmSound sound = constant(1, 64, (short) 1000);
+        int first = mixer.play(sound, 1f, 1f);
+        int second = mixer.play(sound, 1f, 1f);
+        int third = mixer.play(sound, 1f, 1f);
+        assertTrue(third != 0);
+        assertFalse(mixer.isPlaying(first));
+        assertTrue(mixer.isPlaying(second));
+        assertTrue(mixer.isPlaying(third));
+        assertEquals(2, mixer.getActiveVoices());
+    }
+
+    @Test
+    public void stealsTheQuietestVoice() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 2, Mixer.STEAL_QUIETEST);
+        PcmSound sound = constant(1, 64, (short) 1000);
+        int loud = mixer.play(sound, 1f, 1f);
+        int quiet = mixer.play(sound, 0.1f, 0.2f);
+        int third = mixer.play(sound, 1f, 1f);
+        assertTrue(third != 0);
+        assertTrue(mixer.isPlaying(loud));
+        assertFalse(mixer.isPlaying(quiet));
+        assertEquals(2, mixer.getActiveVoices());
+    }
+
+    @Test
+    public void noVoiceWhenNothingMayBeStolen() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 1, Mixer.STEAL_NONE);
+        PcmSound sound = constant(1, 64, (short) 1000);
+        int first = mixer.play(sound, 1f, 1f);
+        assertEquals(0, mixer.play(sound, 1f, 1f));
+        assertTrue(mixer.isPlaying(first));
+
+        // looping voices are kept whatever the policy
+        mixer.setStealPolicy(Mixer.STEAL_OLDEST);
+        mixer.stop(first);
+        int loop = mixer.play(sound, 1f, 1f, 0, 0, 64, null);
+        assertEquals(0, mixer.play(sound, 1f, 1f));
+        assertTrue(mixer.isPlaying(loop));
+    }
+
+    // A voice is freed at the end of its sound, the rest of the buffer is silent
+    @Test
+    public void mixReturnsTheVoicesStillActive() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 4, Mixer.STEAL_OLDEST);
+        int shortVoice = mixer.play(constant(1, 4, (short) 1000), 1f, 1f);
+        mixer.play(constant(1, 12, (short) 100), 1f, 1f);
+        short[] output = new short[8 * Mixer.OUTPUT_CHANNELS];
+        assertEquals(1, mixer.mix(output, 8));
+        assertFalse(mixer.isPlaying(shortVoice));
+        assertEquals(1100, output[3 * 2]);
+        assertEquals(100, output[4 * 2]);
+        assertEquals(0, mixer.mix(output, 8));
+        assertEquals(100, output[3 * 2]);
+        assertEquals(0, output[4 * 2]);
+        assertEquals(0, mixer.getActiveVoices());
+        assertEquals(0, mixer.mix(output, 8));
+        assertEquals(0, output[0]);
+    }
+
+    // -------------------------------
+    // ------------ Loops ------------
+    // -------------------------------
+
+    // Ramp of 12 frames looping [4, 8[: the frame after 7 is 4, at the exact frame
+    @Test
+    public void loopWrapsAtTheExactFrame() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 4, Mixer.STEAL_OLDEST);
+        LoopCounter counter = new LoopCounter();
+        int voiceId = mixer.play(ramp(OUTPUT_RATE, 12, 100), 1f, 1f, 4, 4, 8, counter);
+        short[] left = mixLeft(mixer, 16, 3);
+        for (int frame = 0; frame < 16; frame++) {
+            assertEquals("frame " + frame, (4 + frame % 4) * 100, left[frame]);
+        }
+        assertEquals(3, counter.loops);
+        assertTrue(mixer.isPlaying(voiceId));
+    }
+
+    // The intro [0, 4[ is played once, then the loop region
+    @Test
+    public void introIsPlayedOnceBeforeTheLoop() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 4, Mixer.STEAL_OLDEST);
+        LoopCounter counter = new LoopCounter();
+        mixer.play(ramp(OUTPUT_RATE, 12, 100), 1f, 1f, 0, 4, 8, counter);
+        short[] left = mixLeft(mixer, 20, 3);
+        for (int frame = 0; frame < 4; frame++) {
+            assertEquals("frame " + frame, frame * 100, left[frame]);
+        }
+        for (int frame = 4; frame < 20; frame++) {
+            assertEquals("frame " + frame, (4 + frame % 4) * 100, left[frame]);
+        }
+        assertEquals(3, counter.loops);
+    }
+
+    // 22.05kHz at 44.1kHz: halfway past the last frame of the region interpolates toward its first frame
+    @Test
+    public void resampledLoopInterpolatesAcrossTheWrap() {
+        Mixer mixer = new Mixer(OUTPUT_RATE, 4, Mixer.STEAL_OLDEST);
+        LoopCounter counter = new LoopCounter();
+        mixer.play(ramp(22050, 12, 100), 1f, 1f, 0, 4, 8, counter);
+        short[] left = mixLeft(mixer, 32, 5);
+        for (int frame = 0; frame < 8; frame++) {
+            assertEquals("frame " + frame, frame * 50, left[frame]); // intro
+        }
+        for (int frame = 8; frame < 32; frame++) {
+            int position = frame % 8; // in half source frames from the loop start
+            int expected = position == 7 ? 550 : 400 + position * 50;
+            assertEquals("frame " + frame, expected, left[frame]);
+        }
+        assertEquals(2, counter.loops); // at frames 16 and 24
+    }
+}
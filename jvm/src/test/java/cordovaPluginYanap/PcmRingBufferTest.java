@@ -0,0 +1,221 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.junit.Test;
+
+import java.nio.ShortBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+public class PcmRingBufferTest {
+
+    private static ShortBuffer samples(int from, int count) {
+        short[] values = new short[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = (short) (from + i);
+        }
+        return ShortBuffer.wrap(values);
+    }
+
+    private static short[] sequence(int from, int count) {
+        return samples(from, count).array();
+    }
+
+    // Returns the future, after checking that it is still blocked
+    private static <T> Future<T> blocked(ExecutorService executor, Callable<T> call) throws Exception {
+        Future<T> future = executor.submit(call);
+        try {
+            future.get(50, TimeUnit.MILLISECONDS);
+            fail("expected to block");
+        } catch (TimeoutException e) {
+            // expected
+        }
+        return future;
+    }
+
+    // -------------------------------
+    // ------------ Tests ------------
+    // -------------------------------
+
+    @Test
+    public void samplesComeOutInOrderAcrossTheEnd() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(8);
+        short[] read = new short[4];
+        assertEquals(6, ring.write(samples(0, 6)));
+        assertEquals(4, ring.read(read, 0, 4));
+        assertArrayEquals(sequence(0, 4), read);
+        assertEquals(6, ring.write(samples(6, 6))); // wraps around
+        assertEquals(8, ring.available());
+        short[] all = new short[8];
+        assertEquals(8, ring.read(all, 0, 8));
+        assertArrayEquals(sequence(4, 8), all);
+        assertEquals(0, ring.available());
+    }
+
+    @Test
+    public void readAtAnOffset() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(4);
+        ring.write(samples(10, 3));
+        short[] read = new short[5];
+        assertEquals(3, ring.read(read, 2, 3));
+        assertArrayEquals(new short[] { 0, 0, 10, 11, 12 }, read);
+    }
+
+    @Test
+    public void readWaitsForAWholeChunk() throws Exception {
+        final PcmRingBuffer ring = new PcmRingBuffer(16);
+        final short[] read = new short[8];
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ring.write(samples(0, 5));
+            Future<Integer> reader = blocked(executor, new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return ring.read(read, 0, 8);
+                }
+            });
+            ring.write(samples(5, 3));
+            assertEquals(8, (int) reader.get(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertArrayEquals(sequence(0, 8), read);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void writeWaitsForRoom() throws Exception {
+        final PcmRingBuffer ring = new PcmRingBuffer(4);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> writer = blocked(executor, new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return ring.write(samples(0, 10));
+                }
+            });
+            short[] read = new short[10];
+            int total = 0;
+            while (total < 10) {
+                total += ring.read(read, total, Math.min(2, 10 - total));
+            }
+            assertEquals(10, (int) writer.get(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertArrayEquals(sequence(0, 10), read);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void endGivesTheRemainderThenMinusOne() throws Exception {
+        final PcmRingBuffer ring = new PcmRingBuffer(16);
+        final short[] read = new short[8];
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ring.write(samples(0, 3));
+            Future<Integer> reader = blocked(executor, new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return ring.read(read, 0, 8);
+                }
+            });
+            ring.end();
+            assertEquals(3, (int) reader.get(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(-1, ring.read(read, 0, 8));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void clearDropsTheSamplesAndTheEnd() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(8);
+        ring.write(samples(0, 5));
+        ring.end();
+        ring.clear();
+        assertEquals(0, ring.available());
+        ring.write(samples(100, 8)); // the whole capacity is free again
+        short[] read = new short[8];
+        assertEquals(8, ring.read(read, 0, 8));
+        assertArrayEquals(sequence(100, 8), read);
+    }
+
+    @Test
+    public void abortWakesBothSides() throws Exception {
+        final PcmRingBuffer full = new PcmRingBuffer(2);
+        final PcmRingBuffer empty = new PcmRingBuffer(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> writer = blocked(executor, new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return full.write(samples(0, 4));
+                }
+            });
+            Future<Integer> reader = blocked(executor, new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return empty.read(new short[2], 0, 2);
+                }
+            });
+            full.abort();
+            empty.abort();
+            assertEquals(-1, (int) writer.get(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(-1, (int) reader.get(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            assertEquals(-1, full.write(samples(0, 1)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // A decoding thread and a playing thread with uneven chunk sizes, as in StreamingMusicPlayer
+    @Test
+    public void writerAndReaderThreads() throws Exception {
+        final int total = 1000000;
+        final PcmRingBuffer ring = new PcmRingBuffer(1000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int written = 0; written < total; ) {
+                        int count = Math.min(1 + written % 777, total - written);
+                        ring.write(samples(written, count));
+                        written += count;
+                    }
+                    ring.end();
+                    return null;
+                }
+            });
+            short[] chunk = new short[512];
+            int expected = 0;
+            int count;
+            boolean ordered = true;
+            while ((count = ring.read(chunk, 0, chunk.length)) > 0) {
+                for (int i = 0; i < count; i++) {
+                    ordered &= chunk[i] == (short) expected++;
+                }
+            }
+            writer.get(FakeCallback.TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            assertEquals(total, expected);
+            assertTrue("samples out of order", ordered);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Cost of a play/stop round trip of loaded players, state updates included. The players are loaded during
+// the setup, then only the benchmark thread drives them (it stands for the audio thread, which stays idle).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateMachineBenchmark {
+
+    private static int trials = 0;
+
+    private Yanap yanap;
+    private MusicPlayer music;
+    private SoundPlayer sound;
+
+    @Setup
+    public void setUp() throws Exception {
+        FakeAudioBackend backend = FakeAudioBackend.install();
+        String filePath = "state" + (trials++) + ".snd"; // not shared with the sound of a previous trial
+        backend.addAsset(filePath, FakeAudioBackend.sineFile(44100, 0.5));
+        yanap = new Yanap(new File(System.getProperty("java.io.tmpdir")));
+
+        music = new MusicPlayer(yanap, "music", 1.0f);
+        music.load(backend.openAsset(filePath));
+
+        sound = new SoundPlayer(yanap, "sound", NamedSoundPool.get(NamedSoundPool.DEFAULT_POOL),
+                SoundPlayer.PRIORITY_NORMAL, 1.0f, SoundPlayer.DEFAULT_MAX_VOICES, Mixer.STEAL_OLDEST);
+        sound.filePath = filePath;
+        if (!sound.loadShared()) {
+            sound.load(backend.openAsset(filePath));
+        }
+
+        awaitLoaded(music);
+        awaitLoaded(sound);
+    }
+
+    private static void awaitLoaded(YanapPlayer player) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + FakeCallback.TIMEOUT_MS;
+        while (player.state != Yanap.STATE.LOADED) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException(player.uid + " not loaded");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        music.release();
+        sound.release();
+        yanap.destroy();
+    }
+
+    @Benchmark
+    public Yanap.STATE musicPlayStop() {
+        music.play();
+        music.stop();
+        return music.state;
+    }
+
+    @Benchmark
+    public int soundPlayStop() {
+        sound.play();
+        int voices = sound.getActiveVoices();
+        sound.stop();
+        return voices;
+    }
+}
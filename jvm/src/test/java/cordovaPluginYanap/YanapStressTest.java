@@ -0,0 +1,154 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Many threads calling execute() at once, as JS and native callers would: each creates, plays and releases its
+// own instances while every thread also hammers a few shared ones. Nothing may be lost or corrupted.
+public class YanapStressTest {
+
+    private static final int THREADS = 8;
+    private static final int INSTANCES_PER_THREAD = 100;
+    private static final String[] SHARED = { "shared-sound", "shared-music", "shared-mixed" };
+    private static final String[] TYPES = { "sound", "music", "mixedSound" };
+
+    private Yanap yanap;
+    private FakeCallback channel;
+
+    @Before
+    public void setUp() throws Exception {
+        FakeAudioBackend backend = FakeAudioBackend.install();
+        backend.addAsset("stress.snd", FakeAudioBackend.sineFile(44100, 0.05));
+        yanap = new Yanap(new File(System.getProperty("java.io.tmpdir")));
+        channel = new FakeCallback();
+        yanap.execute("messageChannel", new JSONArray(), channel);
+    }
+
+    @After
+    public void tearDown() {
+        yanap.destroy();
+    }
+
+    private void execute(String action, Object... args) throws Exception {
+        JSONArray array = new JSONArray();
+        for (Object arg : args) {
+            array.put(arg);
+        }
+        if (!yanap.execute(action, array, new FakeCallback())) {
+            throw new AssertionError(action + " not handled");
+        }
+    }
+
+    private void create(String uid, String audioType, int handle) throws Exception {
+        execute("createAudioInstance", uid, audioType, "file:///android_asset/stress.snd", new JSONObject(), handle);
+    }
+
+    private static boolean hasError(List<String> states) {
+        return states.contains(Yanap.STATE.ERROR.toString());
+    }
+
+    // -------------------------------
+    // ------------ Tests ------------
+    // -------------------------------
+
+    @Test
+    public void concurrentCreatePlayRelease() throws Exception {
+        for (int i = 0; i < SHARED.length; i++) {
+            create(SHARED[i], TYPES[i], 0);
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                workers.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        Random random = new Random(thread);
+                        start.await();
+                        for (int i = 0; i < INSTANCES_PER_THREAD; i++) {
+                            String uid = "t" + thread + "-" + i;
+                            int handle = 1 + thread * INSTANCES_PER_THREAD + i;
+                            create(uid, TYPES[i % TYPES.length], handle);
+                            execute("play", random.nextBoolean() ? uid : handle);
+                            execute("setVolume", handle, 0.5, 0.5);
+                            String shared = SHARED[random.nextInt(SHARED.length)];
+                            execute("play", shared);
+                            execute("stop", shared);
+                            execute("batch", new JSONArray()
+                                    .put(new JSONArray().put("stop").put(handle))
+                                    .put(new JSONArray().put("play").put(shared)));
+                            execute("release", random.nextBoolean() ? uid : handle);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        FakeCallback.sync(yanap.getAudioThread());
+
+        // every instance of the workers went through its own lifecycle, released exactly once
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 0; i < INSTANCES_PER_THREAD; i++) {
+                String uid = "t" + t + "-" + i;
+                assertTrue(uid, channel.awaitState(uid, Yanap.STATE.RELEASED));
+                List<String> states = channel.getStates(uid);
+                assertFalse(uid + " " + states, hasError(states));
+                assertEquals(uid + " " + states, "LOADING", states.get(0));
+                assertEquals(uid + " " + states, 1, Collections.frequency(states, "RELEASED"));
+                assertEquals(uid + " " + states, "RELEASED", states.get(states.size() - 1));
+            }
+        }
+
+        // the shared instances are still usable
+        for (String shared : SHARED) {
+            assertTrue(shared, channel.awaitState(shared, Yanap.STATE.LOADED));
+            assertFalse(shared, hasError(channel.getStates(shared)));
+            execute("release", shared);
+            assertTrue(shared, channel.awaitState(shared, Yanap.STATE.RELEASED));
+        }
+
+        // nothing left in the registries
+        assertTrue(yanap.execute("getMetrics", new JSONArray(), new FakeCallback()));
+        JSONArray metrics = channel.awaitMessage(EventChannel.MSG_METRICS);
+        assertEquals(0, metrics.getJSONObject(2).getInt("players"));
+        FakeCallback snapshot = new FakeCallback();
+        assertTrue(yanap.execute("snapshot", new JSONArray(), snapshot));
+        assertEquals(0, ((byte[]) snapshot.awaitResult()).length);
+    }
+}
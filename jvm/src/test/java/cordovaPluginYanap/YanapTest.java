@@ -0,0 +1,249 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Whole engine driven through execute(), as JS does, on top of the FakeAudioBackend
+public class YanapTest {
+
+    private static final String ASSET = "file:///android_asset/";
+
+    private FakeAudioBackend backend;
+    private Yanap yanap;
+    private FakeCallback channel;
+
+    @Before
+    public void setUp() throws Exception {
+        backend = FakeAudioBackend.install();
+        backend.addAsset("short.snd", FakeAudioBackend.sineFile(44100, 0.1));
+        backend.addAsset("long.snd", FakeAudioBackend.sineFile(44100, 0.5));
+        yanap = new Yanap(new File(System.getProperty("java.io.tmpdir")));
+        channel = new FakeCallback();
+        yanap.execute("messageChannel", new JSONArray(), channel);
+    }
+
+    @After
+    public void tearDown() {
+        yanap.destroy();
+    }
+
+    private void execute(String action, Object... args) throws Exception {
+        JSONArray array = new JSONArray();
+        for (Object arg : args) {
+            array.put(arg);
+        }
+        assertTrue(yanap.execute(action, array, new FakeCallback()));
+    }
+
+    private void create(String uid, String audioType, String filePath, JSONObject options, int handle) throws Exception {
+        execute("createAudioInstance", uid, audioType, ASSET + filePath, options, handle);
+    }
+
+    // -------------------------------
+    // ------------ Tests ------------
+    // -------------------------------
+
+    @Test
+    public void soundIsLoadedPlayedAndReleased() throws Exception {
+        create("sound1", "sound", "short.snd", new JSONObject(), 0);
+        assertTrue(channel.awaitState("sound1", Yanap.STATE.LOADED));
+        execute("play", "sound1");
+        execute("release", "sound1");
+        assertTrue(channel.awaitState("sound1", Yanap.STATE.RELEASED));
+        assertEquals("[LOADING, LOADED, RELEASED]", channel.getStates("sound1").toString());
+        assertNotNull(channel.awaitMessage(EventChannel.MSG_FILE_LENGTH));
+    }
+
+    @Test
+    public void playWhileLoadingIsApplied() throws Exception {
+        create("music1", "music", "long.snd", new JSONObject(), 0);
+        execute("play", "music1");
+        assertTrue(channel.awaitState("music1", Yanap.STATE.PLAYING));
+        execute("stop", "music1");
+        assertTrue(channel.awaitState("music1", Yanap.STATE.STOPPED));
+        execute("release", "music1");
+        assertTrue(channel.awaitState("music1", Yanap.STATE.RELEASED));
+    }
+
+    @Test
+    public void streamingMusicStopsAtTheEnd() throws Exception {
+        create("stream1", "music", "short.snd", new JSONObject().put("streaming", true), 0);
+        execute("play", "stream1");
+        assertTrue(channel.awaitState("stream1", Yanap.STATE.PLAYING));
+        assertTrue(channel.awaitState("stream1", Yanap.STATE.STOPPED));
+        execute("release", "stream1");
+        assertTrue(channel.awaitState("stream1", Yanap.STATE.RELEASED));
+    }
+
+    // The decoder restarts from the beginning and the whole file is written again
+    @Test
+    public void streamingMusicPlaysAgainAfterTheEnd() throws Exception {
+        create("stream2", "music", "short.snd", new JSONObject().put("streaming", true), 0);
+        execute("play", "stream2");
+        assertTrue(channel.awaitState("stream2", Yanap.STATE.STOPPED));
+        long framesBefore = backend.writtenFrames.get();
+        execute("play", "stream2");
+        assertTrue(channel.awaitState("stream2", Yanap.STATE.STOPPED, 2));
+        assertTrue(backend.writtenFrames.get() - framesBefore >= 4410); // 0.1s at 44.1kHz
+        assertEquals("[LOADING, LOADED, PLAYING, STOPPED, PLAYING, STOPPED]", channel.getStates("stream2").toString());
+        execute("release", "stream2");
+        assertTrue(channel.awaitState("stream2", Yanap.STATE.RELEASED));
+    }
+
+    // Stop then play landing right when the end is reached: the play is kept and reports its own end
+    @Test
+    public void streamingMusicKeepsPlaysLandingAtTheEnd() throws Exception {
+        create("stream3", "music", "short.snd", new JSONObject().put("streaming", true), 0);
+        assertTrue(channel.awaitState("stream3", Yanap.STATE.LOADED));
+        int plays = 20;
+        for (int i = 1; i <= plays; i++) {
+            execute("play", "stream3");
+            assertTrue(channel.awaitState("stream3", Yanap.STATE.PLAYING, 2 * i - 1));
+            Thread.sleep(i % 3); // the fake output does not block, the end is reached within a few ms
+            execute("stop", "stream3");
+            execute("play", "stream3");
+            assertTrue("play " + i + " lost", channel.awaitState("stream3", Yanap.STATE.STOPPED, 2 * i));
+        }
+        execute("release", "stream3");
+        assertTrue(channel.awaitState("stream3", Yanap.STATE.RELEASED));
+        ArrayList<String> states = channel.getStates("stream3");
+        assertEquals(2 + 4 * plays + 1, states.size());
+        for (int i = 2; i < states.size() - 1; i++) {
+            assertEquals(i % 2 == 0 ? "PLAYING" : "STOPPED", states.get(i));
+        }
+    }
+
+    @Test
+    public void mixedSoundIsWrittenToTheOutput() throws Exception {
+        long framesBefore = backend.writtenFrames.get();
+        create("mixed1", "mixedSound", "short.snd", new JSONObject(), 0);
+        execute("play", "mixed1");
+        assertTrue(channel.awaitState("mixed1", Yanap.STATE.LOADED));
+        long deadline = System.currentTimeMillis() + FakeCallback.TIMEOUT_MS;
+        while (backend.writtenFrames.get() == framesBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(backend.writtenFrames.get() > framesBefore);
+        execute("release", "mixed1");
+        assertTrue(channel.awaitState("mixed1", Yanap.STATE.RELEASED));
+    }
+
+    // The mixer thread and its output do not outlive the plugin
+    @Test
+    public void destroyReleasesTheMixer() throws Exception {
+        Yanap destroyed = new Yanap(new File(System.getProperty("java.io.tmpdir")));
+        FakeCallback destroyedChannel = new FakeCallback();
+        destroyed.execute("messageChannel", new JSONArray(), destroyedChannel);
+        int outputsBefore = backend.openOutputs.get();
+        assertTrue(destroyed.execute("createAudioInstance", new JSONArray().put("mixed2").put("mixedSound")
+                .put(ASSET + "short.snd").put(new JSONObject()), new FakeCallback()));
+        assertTrue(destroyedChannel.awaitState("mixed2", Yanap.STATE.LOADED));
+        assertEquals(outputsBefore + 1, backend.openOutputs.get());
+        destroyed.destroy();
+        assertTrue(destroyedChannel.awaitState("mixed2", Yanap.STATE.RELEASED));
+        long deadline = System.currentTimeMillis() + FakeCallback.TIMEOUT_MS;
+        while (backend.openOutputs.get() > outputsBefore && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(outputsBefore, backend.openOutputs.get());
+    }
+
+    @Test
+    public void unknownFileIsAnError() throws Exception {
+        create("missing1", "sound", "missing.snd", new JSONObject(), 0);
+        assertTrue(channel.awaitState("missing1", Yanap.STATE.ERROR));
+    }
+
+    @Test
+    public void unknownInstanceIsReportedAsAnError() throws Exception {
+        execute("play", "released1");
+        assertTrue(channel.awaitState("released1", Yanap.STATE.ERROR));
+        execute("stop", 99);
+        assertTrue(channel.awaitState(99, Yanap.STATE.ERROR));
+    }
+
+    // The instance could not be created: ERROR, by uid or by handle
+    @Test
+    public void invalidCreationArgumentsAreAnError() throws Exception {
+        execute("createAudioInstance", "invalid1");
+        assertTrue(channel.awaitState("invalid1", Yanap.STATE.ERROR));
+        execute("play", 98, "notAVoiceHandle");
+        assertTrue(channel.awaitState(98, Yanap.STATE.ERROR));
+    }
+
+    // The instance exists and stays usable: global error event, the next commands of a batch still run
+    @Test
+    public void invalidCommandArgumentsAreReported() throws Exception {
+        create("music5", "music", "long.snd", new JSONObject(), 44);
+        assertTrue(channel.awaitState("music5", Yanap.STATE.LOADED));
+        execute("setVolume", 44, "loud");
+        JSONArray error = channel.awaitMessage(EventChannel.MSG_ERROR);
+        assertNotNull(error);
+        assertTrue(error.getString(2), error.getString(2).startsWith("(setVolume) invalid arguments"));
+        execute("batch", new JSONArray()
+                .put(new JSONArray().put("fadeTo").put(44))
+                .put(new JSONArray().put("play").put(44)));
+        assertNotNull(channel.awaitMessage(EventChannel.MSG_ERROR, 1));
+        assertTrue(channel.awaitState("music5", Yanap.STATE.PLAYING));
+        assertFalse(channel.getStates("music5").contains("ERROR"));
+        execute("release", 44);
+        assertTrue(channel.awaitState("music5", Yanap.STATE.RELEASED));
+    }
+
+    @Test
+    public void snapshotReportsPlayersByHandle() throws Exception {
+        create("music2", "music", "long.snd", new JSONObject(), 42);
+        assertTrue(channel.awaitState("music2", Yanap.STATE.LOADED));
+        FakeCallback callback = new FakeCallback();
+        assertTrue(yanap.execute("snapshot", new JSONArray().put(new JSONArray().put(42).put(7)), callback));
+        ByteBuffer snapshot = ByteBuffer.wrap((byte[]) callback.awaitResult()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(2 * Yanap.SNAPSHOT_STRIDE * 4, snapshot.remaining());
+        assertEquals(42, snapshot.getInt());
+        assertEquals(Yanap.STATE.LOADED.ordinal(), snapshot.getInt());
+        assertEquals(0, snapshot.getInt());   // position
+        assertEquals(500, snapshot.getInt()); // duration
+        assertEquals(7, snapshot.getInt());
+        assertEquals(Yanap.STATE.RELEASED.ordinal(), snapshot.getInt());
+    }
+
+    // Every player with a handle, the ones created by uid only are left out
+    @Test
+    public void fullSnapshotOnlyReportsPlayersWithAHandle() throws Exception {
+        create("music3", "music", "long.snd", new JSONObject(), 43);
+        create("music4", "music", "long.snd", new JSONObject(), 0);
+        assertTrue(channel.awaitState("music3", Yanap.STATE.LOADED));
+        assertTrue(channel.awaitState("music4", Yanap.STATE.LOADED));
+        FakeCallback callback = new FakeCallback();
+        assertTrue(yanap.execute("snapshot", new JSONArray(), callback));
+        ByteBuffer snapshot = ByteBuffer.wrap((byte[]) callback.awaitResult()).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(Yanap.SNAPSHOT_STRIDE * 4, snapshot.remaining());
+        assertEquals(43, snapshot.getInt());
+        assertEquals(Yanap.STATE.LOADED.ordinal(), snapshot.getInt());
+    }
+
+    @Test
+    public void unknownActionIsNotHandled() throws Exception {
+        assertFalse(yanap.execute("noSuchAction", new JSONArray(), new FakeCallback()));
+    }
+}
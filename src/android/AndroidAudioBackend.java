@@ -0,0 +1,631 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaPlayer;
+import android.media.SoundPool;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.ParcelFileDescriptor;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// AudioBackend on top of the application assets, MediaPlayer, SoundPool, AudioTrack, MediaCodec and HandlerThread
+public class AndroidAudioBackend implements AudioBackend {
+
+    // Log TAG definition
+    public static final String TAG = AndroidAudioBackend.class.getSimpleName();
+
+    // Constant(s)
+    final private static long TIMEOUT_US = 10000;
+
+    private final Context context;
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public AndroidAudioBackend(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    // -------------------------------
+    // ------------ Files ------------
+    // -------------------------------
+
+    @Override
+    public AudioBackend.Source openAsset(String path) throws IOException {
+        return new Source(context.getAssets().openFd(path));
+    }
+
+    @Override
+    public AudioBackend.Source openFile(File file) throws IOException {
+        try {
+            return new Source(new AssetFileDescriptor(ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY), 0, -1));
+        } catch (FileNotFoundException e) {
+            throw new IOException("unable to open `" + file.getAbsolutePath() + "`");
+        }
+    }
+
+    @Override
+    public long getPackageStamp() {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0;
+        }
+    }
+
+    private static class Source implements AudioBackend.Source {
+        final AssetFileDescriptor afd;
+
+        Source(AssetFileDescriptor afd) {
+            this.afd = afd;
+        }
+
+        @Override
+        public long getLength() {
+            return afd.getLength();
+        }
+
+        @Override
+        public AudioBackend.Source subRange(long offset, long length) {
+            return new Source(new AssetFileDescriptor(afd.getParcelFileDescriptor(), afd.getStartOffset() + offset, length));
+        }
+
+        @Override
+        public void close() throws IOException {
+            afd.close();
+        }
+    }
+
+    private static AssetFileDescriptor afd(AudioBackend.Source source) {
+        return ((Source) source).afd;
+    }
+
+    // -------------------------------
+    // ----------- Factory -----------
+    // -------------------------------
+
+    @Override
+    public AudioBackend.Stream createStream() {
+        return new Stream();
+    }
+
+    @Override
+    public AudioBackend.Samples createSamples(int maxStreams, int usage, int contentType) {
+        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
+            return new Samples(createNewSoundPool(maxStreams, usage, contentType));
+        }
+        return new Samples(createOldSoundPool(maxStreams));
+    }
+
+    // SDK >= 16 is required to use the method setNextMediaPlayer
+    @Override
+    public boolean supportsGaplessLoop() {
+        return android.os.Build.VERSION.SDK_INT >= 16;
+    }
+
+    // modern style declaration
+    @android.annotation.TargetApi(android.os.Build.VERSION_CODES.LOLLIPOP)
+    private static SoundPool createNewSoundPool(int maxStreams, int usage, int contentType) {
+        AudioAttributes attributes = new AudioAttributes.Builder()
+                .setUsage(toAttributesUsage(usage))
+                .setContentType(toAttributesContentType(contentType))
+                .build();
+        return new SoundPool.Builder()
+                .setMaxStreams(maxStreams)
+                .setAudioAttributes(attributes)
+                .build();
+    }
+
+    // old style declaration (for compatibility)
+    @SuppressWarnings("deprecation")
+    private static SoundPool createOldSoundPool(int maxStreams) {
+        return new SoundPool(maxStreams, AudioManager.STREAM_MUSIC, 0);
+    }
+
+    @android.annotation.TargetApi(android.os.Build.VERSION_CODES.LOLLIPOP)
+    private static int toAttributesUsage(int usage) {
+        switch (usage) {
+            case USAGE_MEDIA:
+                return AudioAttributes.USAGE_MEDIA;
+            case USAGE_SONIFICATION:
+                return AudioAttributes.USAGE_ASSISTANCE_SONIFICATION;
+            default:
+                return AudioAttributes.USAGE_GAME;
+        }
+    }
+
+    @android.annotation.TargetApi(android.os.Build.VERSION_CODES.LOLLIPOP)
+    private static int toAttributesContentType(int contentType) {
+        switch (contentType) {
+            case CONTENT_TYPE_MUSIC:
+                return AudioAttributes.CONTENT_TYPE_MUSIC;
+            case CONTENT_TYPE_SPEECH:
+                return AudioAttributes.CONTENT_TYPE_SPEECH;
+            default:
+                return AudioAttributes.CONTENT_TYPE_SONIFICATION;
+        }
+    }
+
+    // -------------------------------
+    // ----------- Threads -----------
+    // -------------------------------
+
+    @Override
+    public AudioBackend.Loop createLoop(String name) {
+        return new Loop(name);
+    }
+
+    @Override
+    public void setThreadPriority(int priority) {
+        android.os.Process.setThreadPriority(priority == PRIORITY_URGENT_AUDIO
+                ? android.os.Process.THREAD_PRIORITY_URGENT_AUDIO : android.os.Process.THREAD_PRIORITY_AUDIO);
+    }
+
+    // MediaPlayers and SoundPools created on the thread use its looper for their callbacks
+    private static class Loop implements AudioBackend.Loop {
+        private final HandlerThread thread;
+        private final Handler handler;
+
+        Loop(String name) {
+            thread = new HandlerThread(name, android.os.Process.THREAD_PRIORITY_AUDIO);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+
+        @Override
+        public void post(Runnable runnable) {
+            handler.post(runnable);
+        }
+
+        @Override
+        public void postAtFront(Runnable runnable) {
+            handler.postAtFrontOfQueue(runnable);
+        }
+
+        @Override
+        public void postDelayed(Runnable runnable, long delayMs) {
+            handler.postDelayed(runnable, delayMs);
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            handler.removeCallbacks(runnable);
+        }
+
+        @Override
+        public boolean isCurrentThread() {
+            return Thread.currentThread() == thread;
+        }
+
+        @Override
+        public void quit() {
+            thread.quit();
+        }
+    }
+
+    // -------------------------------
+    // ------- Stream: MediaPlayer ---
+    // -------------------------------
+
+    private static class Stream implements AudioBackend.Stream {
+        private final MediaPlayer mediaPlayer = new MediaPlayer();
+
+        @Override
+        public void setListener(final Listener listener) {
+            mediaPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+                @Override
+                public void onPrepared(MediaPlayer mp) {
+                    listener.onPrepared(Stream.this);
+                }
+            });
+            mediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
+                @Override
+                public void onCompletion(MediaPlayer mp) {
+                    listener.onCompletion(Stream.this);
+                }
+            });
+        }
+
+        @Override
+        public void setDataSource(AudioBackend.Source source) throws IOException {
+            AssetFileDescriptor afd = afd(source);
+            mediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+            mediaPlayer.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+        }
+
+        @Override
+        public void prepare() throws IOException {
+            mediaPlayer.prepare();
+        }
+
+        @Override
+        public void start() {
+            mediaPlayer.start();
+        }
+
+        @Override
+        public void pause() {
+            mediaPlayer.pause();
+        }
+
+        @Override
+        public void stop() {
+            mediaPlayer.stop();
+        }
+
+        @Override
+        public boolean isPlaying() {
+            return mediaPlayer.isPlaying();
+        }
+
+        @Override
+        public void seekTo(int positionMs) {
+            mediaPlayer.seekTo(positionMs);
+        }
+
+        @Override
+        public int getDuration() {
+            return mediaPlayer.getDuration();
+        }
+
+        @Override
+        public int getCurrentPosition() {
+            return mediaPlayer.getCurrentPosition();
+        }
+
+        @Override
+        public void setVolume(float volume1, float volume2) {
+            mediaPlayer.setVolume(volume1, volume2);
+        }
+
+        @Override
+        public void setLooping(boolean looping) {
+            mediaPlayer.setLooping(looping);
+        }
+
+        @Override
+        public void setNext(AudioBackend.Stream next) {
+            if (android.os.Build.VERSION.SDK_INT < 16) { // required by compiler but already filtered with supportsGaplessLoop
+                return;
+            }
+            mediaPlayer.setNextMediaPlayer(next == null ? null : ((Stream) next).mediaPlayer);
+        }
+
+        @Override
+        public void reset() {
+            mediaPlayer.reset();
+        }
+
+        @Override
+        public void release() {
+            mediaPlayer.release();
+        }
+    }
+
+    // -------------------------------
+    // ------- Samples: SoundPool ----
+    // -------------------------------
+
+    private static class Samples implements AudioBackend.Samples {
+        private final SoundPool soundPool;
+
+        Samples(SoundPool soundPool) {
+            this.soundPool = soundPool;
+        }
+
+        @Override
+        public void setListener(final Listener listener) {
+            soundPool.setOnLoadCompleteListener(new SoundPool.OnLoadCompleteListener() {
+                @Override
+                public void onLoadComplete(SoundPool soundPool, int sampleId, int status) {
+                    listener.onLoadComplete(sampleId, status);
+                }
+            });
+        }
+
+        @Override
+        public int load(AudioBackend.Source source, int priority) {
+            return soundPool.load(afd(source), priority);
+        }
+
+        @Override
+        public void unload(int sampleId) {
+            soundPool.unload(sampleId);
+        }
+
+        @Override
+        public int play(int sampleId, float volume1, float volume2, int priority) {
+            return soundPool.play(sampleId, volume1, volume2, priority, 0, 1f);
+        }
+
+        @Override
+        public void stop(int streamId) {
+            soundPool.stop(streamId);
+        }
+
+        @Override
+        public void setVolume(int streamId, float volume1, float volume2) {
+            soundPool.setVolume(streamId, volume1, volume2);
+        }
+
+        @Override
+        public void release() {
+            soundPool.release();
+        }
+    }
+
+    // -------------------------------
+    // ------ Output: AudioTrack -----
+    // -------------------------------
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public AudioBackend.Output createOutput(int sampleRate, int channels, int bufferFrames) {
+        int channelMask = channels == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+        int minBufferSize = AudioTrack.getMinBufferSize(sampleRate, channelMask, AudioFormat.ENCODING_PCM_16BIT);
+        int bufferSize = Math.max(minBufferSize, bufferFrames * channels * 2);
+        return new Output(new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate, channelMask,
+                AudioFormat.ENCODING_PCM_16BIT, bufferSize, AudioTrack.MODE_STREAM));
+    }
+
+    @Override
+    public int getOutputSampleRate() {
+        return AudioTrack.getNativeOutputSampleRate(AudioManager.STREAM_MUSIC);
+    }
+
+    private static class Output implements AudioBackend.Output {
+        private final AudioTrack audioTrack;
+
+        Output(AudioTrack audioTrack) {
+            this.audioTrack = audioTrack;
+        }
+
+        @Override
+        public void play() {
+            audioTrack.play();
+        }
+
+        @Override
+        public void pause() {
+            audioTrack.pause();
+        }
+
+        @Override
+        public void stop() {
+            audioTrack.stop();
+        }
+
+        @Override
+        public void flush() {
+            audioTrack.flush();
+        }
+
+        @Override
+        public int write(short[] samples, int offset, int count) {
+            return audioTrack.write(samples, offset, count);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void setVolume(float volume1, float volume2) {
+            audioTrack.setStereoVolume(volume1, volume2);
+        }
+
+        @Override
+        public long getPlaybackFrames() {
+            return audioTrack.getPlaybackHeadPosition() & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public void release() {
+            audioTrack.release();
+        }
+    }
+
+    // -------------------------------
+    // ---- Decoder: MediaCodec ------
+    // -------------------------------
+
+    // MediaCodec requires Android 5.0 for its buffer getters
+    @Override
+    public boolean supportsDecoding() {
+        return android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP;
+    }
+
+    @Override
+    public AudioBackend.Decoder createDecoder(AudioBackend.Source source) throws IOException {
+        return new Decoder(afd(source));
+    }
+
+    @Override
+    @android.annotation.TargetApi(android.os.Build.VERSION_CODES.JELLY_BEAN)
+    public Format probe(AudioBackend.Source source) {
+        if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.JELLY_BEAN) { return null; }
+        AssetFileDescriptor afd = afd(source);
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            MediaFormat format = selectAudioTrack(extractor);
+            if (format == null) { return null; }
+            return new Format(format.getInteger(MediaFormat.KEY_SAMPLE_RATE), format.getInteger(MediaFormat.KEY_CHANNEL_COUNT),
+                    format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : -1);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            extractor.release();
+        }
+    }
+
+    @android.annotation.TargetApi(android.os.Build.VERSION_CODES.JELLY_BEAN)
+    private static MediaFormat selectAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            MediaFormat format = extractor.getTrackFormat(i);
+            String mime = format.getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) {
+                extractor.selectTrack(i);
+                return format;
+            }
+        }
+        return null;
+    }
+
+    // One input buffer queued and one output buffer dequeued per read, the output buffer is given back
+    // to the codec on the next call. IllegalStateExceptions of the codec are reported as IOExceptions.
+    @android.annotation.TargetApi(android.os.Build.VERSION_CODES.LOLLIPOP)
+    private static class Decoder implements AudioBackend.Decoder {
+        private static final ShortBuffer EMPTY = ShortBuffer.allocate(0);
+
+        private final MediaExtractor extractor = new MediaExtractor();
+        private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        private MediaCodec codec = null;
+        private int sampleRate;
+        private int channels;
+        private long durationUs = -1;
+        private int outputIndex = -1; // output buffer returned by the last read
+        private boolean inputDone = false;
+        private boolean outputDone = false;
+
+        Decoder(AssetFileDescriptor afd) throws IOException {
+            try {
+                extractor.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+                MediaFormat format = selectAudioTrack(extractor);
+                if (format == null) {
+                    throw new IOException("no audio track found");
+                }
+                sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                if (format.containsKey(MediaFormat.KEY_DURATION)) {
+                    durationUs = format.getLong(MediaFormat.KEY_DURATION);
+                }
+                codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+                codec.configure(format, null, null, 0);
+                codec.start();
+            } catch (IOException e) {
+                release();
+                throw e;
+            } catch (IllegalStateException e) {
+                release();
+                throw new IOException("unable to decode file (" + e.getMessage() + ")");
+            }
+        }
+
+        @Override
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        @Override
+        public int getChannels() {
+            return channels;
+        }
+
+        @Override
+        public long getDurationUs() {
+            return durationUs;
+        }
+
+        @Override
+        public ShortBuffer read() throws IOException {
+            try {
+                releaseOutput();
+                if (outputDone) { return null; }
+
+                if (!inputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        ByteBuffer input = codec.getInputBuffer(inputIndex);
+                        int size = extractor.readSampleData(input, 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int index = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+                if (index >= 0) {
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        outputDone = true;
+                    }
+                    if (info.size > 0) {
+                        outputIndex = index;
+                        ByteBuffer buffer = codec.getOutputBuffer(index);
+                        buffer.position(info.offset);
+                        buffer.limit(info.offset + info.size);
+                        return buffer.slice().order(ByteOrder.nativeOrder()).asShortBuffer();
+                    }
+                    codec.releaseOutputBuffer(index, false);
+                } else if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channels = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                }
+                return EMPTY;
+            } catch (IllegalStateException e) {
+                throw new IOException("unable to decode file (" + e.getMessage() + ")");
+            }
+        }
+
+        @Override
+        public void seekToStart() throws IOException {
+            try {
+                releaseOutput();
+                extractor.seekTo(0, MediaExtractor.SEEK_TO_CLOSEST_SYNC);
+                codec.flush();
+                inputDone = false;
+                outputDone = false;
+            } catch (IllegalStateException e) {
+                throw new IOException("unable to decode file (" + e.getMessage() + ")");
+            }
+        }
+
+        private void releaseOutput() {
+            if (outputIndex >= 0) {
+                codec.releaseOutputBuffer(outputIndex, false);
+                outputIndex = -1;
+            }
+        }
+
+        @Override
+        public void release() {
+            if (codec != null) {
+                try {
+                    releaseOutput();
+                    codec.stop();
+                } catch (IllegalStateException e) {
+                    // not started
+                }
+                codec.release();
+                codec = null;
+            }
+            extractor.release();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import android.util.Log;
+
+import java.io.IOException;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Many sounds packed in a single file, each entry being a complete audio file at an offset of the atlas.
+// The atlas is opened once for all its entries: every entry is loaded from a sub-range of the same source,
+// closed when the last entry is loaded. Later reloads (e.g. after an eviction) open it again for their time.
+// Entries of players reading the file while they play (MUSIC, LOOP) open a source of their own instead.
+public class AudioAtlas {
+
+    // Log TAG definition
+    public static final String TAG = AudioAtlas.class.getSimpleName();
+
+    public final String filePath;
+    private AudioBackend.Source source = null;
+    private LeakTracker.Token fdToken = null;
+    private int users = 0;   // loads currently reading the source
+    private int pending = 0; // entries not loaded once yet
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public AudioAtlas(String filePath) {
+        this.filePath = filePath;
+    }
+
+    // -------------------------------
+    // ------------ Entry ------------
+    // -------------------------------
+
+    public static class Entry {
+        final AudioAtlas atlas;
+        final String name;
+        final long offset; // from the start of the atlas
+        final long length;
+        private boolean done = false;
+
+        Entry(AudioAtlas atlas, String name, long offset, long length) {
+            this.atlas = atlas;
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        // Path identifying the entry (sample sharing, cache keys...), never opened as such
+        public String getPath() {
+            return atlas.filePath + "#" + name;
+        }
+    }
+
+    public synchronized Entry add(String name, long offset, long length) {
+        pending++;
+        return new Entry(this, name, offset, length);
+    }
+
+    // -------------------------------
+    // ----------- Source ------------
+    // -------------------------------
+
+    // Sub-range of the atlas source, opened on first use. Must be followed by close(entry),
+    // the returned source itself must not be closed.
+    synchronized AudioBackend.Source open(Entry entry, AudioLoader loader) throws IOException {
+        if (source == null) {
+            source = loader.openFile(filePath);
+            fdToken = LeakTracker.track(source, LeakTracker.KIND_FILE_DESCRIPTOR, filePath);
+        }
+        if (!contains(source, entry)) {
+            closeIfUnused();
+            throw new IOException("entry `" + entry.name + "` is out of the atlas `" + filePath + "`");
+        }
+        users++;
+        return source.subRange(entry.offset, entry.length);
+    }
+
+    // Sub-range of a new source of the atlas, for players reading it while they play: Streams sharing
+    // a source share its file offset. Must be closed by the caller, then followed by done(entry).
+    AudioBackend.Source openOwn(Entry entry, AudioLoader loader) throws IOException {
+        final AudioBackend.Source own = loader.openFile(filePath);
+        if (!contains(own, entry)) {
+            own.close();
+            throw new IOException("entry `" + entry.name + "` is out of the atlas `" + filePath + "`");
+        }
+        final AudioBackend.Source range = own.subRange(entry.offset, entry.length);
+        return new AudioBackend.Source() { // closing the sub-range closes the atlas source it shares
+            @Override
+            public long getLength() {
+                return range.getLength();
+            }
+
+            @Override
+            public AudioBackend.Source subRange(long offset, long length) {
+                return range.subRange(offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                own.close();
+            }
+        };
+    }
+
+    private static boolean contains(AudioBackend.Source source, Entry entry) {
+        return entry.offset >= 0 && entry.length > 0 && (source.getLength() < 0 || entry.offset + entry.length <= source.getLength());
+    }
+
+    synchronized void close(Entry entry) {
+        users--;
+        done(entry);
+    }
+
+    // The entry will not use the source for its first load (failed, shared or released before)
+    synchronized void done(Entry entry) {
+        if (!entry.done) {
+            entry.done = true;
+            pending--;
+        }
+        closeIfUnused();
+    }
+
+    private void closeIfUnused() {
+        if (source == null || users > 0 || pending > 0) { return; }
+        try {
+            source.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to close file descriptor", e);
+        }
+        LeakTracker.close(fdToken);
+        source = null;
+        fdToken = null;
+    }
+}
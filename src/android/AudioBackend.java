@@ -0,0 +1,204 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Everything the players, the pools, the mixer and the audio thread need from the platform, so that none of them
+// uses an Android class: files, MediaPlayer/SoundPool like objects, PCM decoding and output, threads with a queue
+// of callbacks. AndroidAudioBackend is the implementation used by the plugin, another one (e.g. in memory, for the
+// JVM tests) can be given to Yanap.setAudioBackend before the plugin is created.
+public interface AudioBackend {
+
+    // Thread priorities
+    int PRIORITY_AUDIO = 0;        // audio thread, streaming threads
+    int PRIORITY_URGENT_AUDIO = 1; // mixer and scheduler threads
+
+    // Usages and content types of the samples, see createSamples
+    int USAGE_GAME = 0;
+    int USAGE_MEDIA = 1;
+    int USAGE_SONIFICATION = 2;
+    int CONTENT_TYPE_SONIFICATION = 0;
+    int CONTENT_TYPE_MUSIC = 1;
+    int CONTENT_TYPE_SPEECH = 2;
+
+    // -------------------------------
+    // ------------ Files ------------
+    // -------------------------------
+
+    // Open audio file, or a sub-range of one
+    interface Source extends Closeable {
+        // In bytes, -1 when unknown
+        long getLength();
+        // Sub-range sharing this source: it must not be closed itself, and is invalid once this source is closed
+        Source subRange(long offset, long length);
+    }
+
+    // Path relative to the packaged assets
+    Source openAsset(String path) throws IOException;
+
+    Source openFile(File file) throws IOException;
+
+    // Changes when the packaged assets may have changed (e.g. application update time)
+    long getPackageStamp();
+
+    // -------------------------------
+    // ----------- Streams -----------
+    // -------------------------------
+
+    // Compressed file decoded while it plays, same states and calls as MediaPlayer
+    interface Stream {
+
+        interface Listener {
+            void onPrepared(Stream stream);
+            void onCompletion(Stream stream);
+        }
+
+        void setListener(Listener listener);
+        // The stream keeps its own copy of the source, which can be closed once prepared
+        void setDataSource(Source source) throws IOException;
+        void prepare() throws IOException;
+        void start();
+        void pause();
+        void stop();
+        boolean isPlaying();
+        void seekTo(int positionMs);
+        int getDuration();
+        int getCurrentPosition();
+        void setVolume(float volume1, float volume2);
+        void setLooping(boolean looping);
+        // Starts `next` as soon as this stream completes, only called when supportsGaplessLoop()
+        void setNext(Stream next);
+        void reset();
+        void release();
+    }
+
+    // -------------------------------
+    // ----------- Samples -----------
+    // -------------------------------
+
+    // Decoded samples played on a fixed number of streams, same calls as SoundPool
+    interface Samples {
+
+        interface Listener {
+            void onLoadComplete(int sampleId, int status);
+        }
+
+        void setListener(Listener listener);
+        // Returns the sample id, the listener is called once it can be played. The source can be closed right after.
+        int load(Source source, int priority);
+        void unload(int sampleId);
+        // Returns the stream id, 0 if no stream is available
+        int play(int sampleId, float volume1, float volume2, int priority);
+        void stop(int streamId);
+        void setVolume(int streamId, float volume1, float volume2);
+        void release();
+    }
+
+    // -------------------------------
+    // ---------- PCM output ---------
+    // -------------------------------
+
+    // Streaming output of 16 bits interleaved PCM, same calls as a streaming AudioTrack.
+    // Calls throw IllegalStateException when the output fails.
+    interface Output {
+        void play();
+        void pause();
+        // What is already written is still played
+        void stop();
+        void flush();
+        // Blocks until everything is written or the output is paused, returns the number of samples written
+        int write(short[] samples, int offset, int count);
+        void setVolume(float volume1, float volume2);
+        // Frames played since the output was created or flushed
+        long getPlaybackFrames();
+        void release();
+    }
+
+    // `bufferFrames` is a minimum, throws IllegalArgumentException for an unsupported format
+    Output createOutput(int sampleRate, int channels, int bufferFrames);
+
+    // Rate at which an Output is not resampled
+    int getOutputSampleRate();
+
+    // -------------------------------
+    // ---------- PCM decoding -------
+    // -------------------------------
+
+    // Format of the audio track of a file
+    class Format {
+        public final int sampleRate;
+        public final int channels;
+        public final long durationUs; // -1 when unknown
+
+        public Format(int sampleRate, int channels, long durationUs) {
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.durationUs = durationUs;
+        }
+    }
+
+    // Decodes the audio track of a file into 16 bits interleaved PCM, from a single thread.
+    // The sample rate and channel count may change after a read.
+    interface Decoder {
+        int getSampleRate();
+        int getChannels();
+        // -1 when unknown
+        long getDurationUs();
+        // Next decoded samples, valid until the next call. Empty when none is ready yet, null at the end of the file.
+        ShortBuffer read() throws IOException;
+        void seekToStart() throws IOException;
+        void release();
+    }
+
+    // Only called when supportsDecoding(), the decoder keeps its own copy of the source
+    Decoder createDecoder(Source source) throws IOException;
+
+    // Null when the format cannot be read without decoding
+    Format probe(Source source);
+
+    boolean supportsDecoding();
+
+    // -------------------------------
+    // ----------- Threads -----------
+    // -------------------------------
+
+    // Thread running posted callbacks one at a time, in order. Media objects created on it
+    // (Stream, Samples) call their listeners on it.
+    interface Loop {
+        void post(Runnable runnable);
+        // Runs before every callback already posted
+        void postAtFront(Runnable runnable);
+        void postDelayed(Runnable runnable, long delayMs);
+        void removeCallbacks(Runnable runnable);
+        boolean isCurrentThread();
+        // Callbacks not run yet are dropped
+        void quit();
+    }
+
+    // Started loop thread, with the PRIORITY_AUDIO priority
+    Loop createLoop(String name);
+
+    // Priority of the calling thread, one of the PRIORITY_* constants
+    void setThreadPriority(int priority);
+
+    // -------------------------------
+    // ----------- Factory -----------
+    // -------------------------------
+
+    Stream createStream();
+
+    // `usage` and `contentType` are USAGE_* and CONTENT_TYPE_* constants
+    Samples createSamples(int maxStreams, int usage, int contentType);
+
+    boolean supportsGaplessLoop();
+}
@@ -0,0 +1,220 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Named groups of players sharing a gain and a mute, under the master bus. Players apply
+// player volume x bus gain x master gain, so changing a bus costs a single bridge call.
+// Ducking rules lower a bus while another one has voices playing. Audio thread only.
+public class AudioBuses {
+
+    // Log TAG definition
+    public static final String TAG = AudioBuses.class.getSimpleName();
+
+    // Default buses
+    public static final String MASTER = "master";
+    public static final String MUSIC = "music";
+    public static final String SFX = "sfx";
+    public static final String VOICE = "voice";
+
+    // Constant(s)
+    final private static long STEP_MS = 20;
+
+    private final AudioThread audioThread;
+    private final HashMap<String, Bus> buses = new HashMap<String, Bus>();
+    private final ArrayList<DuckingRule> rules = new ArrayList<DuckingRule>();
+    private boolean scheduled = false;
+
+    private final Runnable stepRunnable = new Runnable() {
+        @Override
+        public void run() {
+            step();
+        }
+    };
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public AudioBuses(AudioThread audioThread) {
+        this.audioThread = audioThread;
+        Bus master = new Bus(MASTER, null);
+        buses.put(MASTER, master);
+        buses.put(MUSIC, new Bus(MUSIC, master));
+        buses.put(SFX, new Bus(SFX, master));
+        buses.put(VOICE, new Bus(VOICE, master));
+    }
+
+    // -------------------------------
+    // ------------- Bus -------------
+    // -------------------------------
+
+    public static class Bus {
+        final String name;
+        final Bus parent; // null for the master bus
+        final ArrayList<YanapPlayer> players = new ArrayList<YanapPlayer>();
+        float gain = 1f;
+        boolean muted = false;
+        float duck = 1f; // lowest level of the ducking rules targeting this bus
+
+        Bus(String name, Bus parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        public float getEffectiveGain() {
+            float effective = muted ? 0f : gain * duck;
+            return parent == null ? effective : effective * parent.getEffectiveGain();
+        }
+
+        boolean isActive() {
+            for (int i = 0; i < players.size(); i++) {
+                if (players.get(i).getActiveVoices() > 0) { return true; }
+            }
+            return false;
+        }
+    }
+
+    // `target` is lowered to `gain` in `attackMs` while `trigger` is active, and back in `releaseMs`
+    private static class DuckingRule {
+        Bus trigger;
+        Bus target;
+        float gain;
+        long attackMs;
+        long releaseMs;
+        float depth = 0f; // level change over attackMs or releaseMs: 1 - gain, or more while the level ramps back from a deeper rule
+        float level = 1f;
+    }
+
+    // -------------------------------
+    // ---------- Registry -----------
+    // -------------------------------
+
+    // Returns null for an unknown bus
+    public Bus get(String name) {
+        return buses.get(name);
+    }
+
+    // Default bus of the players of an audio type
+    public Bus getDefault(String audioType) {
+        if (audioType.equals("music") || audioType.equals("loop")) { return buses.get(MUSIC); }
+        return buses.get(SFX);
+    }
+
+    // Creates the bus (under master) if needed, then sets its gain and mute
+    public void configure(String name, float gain, boolean muted) {
+        Bus bus = buses.get(name);
+        if (bus == null) {
+            bus = new Bus(name, buses.get(MASTER));
+            buses.put(name, bus);
+        }
+        bus.gain = Math.max(0f, gain);
+        bus.muted = muted;
+        apply(bus);
+    }
+
+    // -------------------------------
+    // ----------- Players -----------
+    // -------------------------------
+
+    public void attach(YanapPlayer player, Bus bus) {
+        player.bus = bus;
+        bus.players.add(player);
+    }
+
+    public void detach(YanapPlayer player) {
+        if (player.bus == null) { return; }
+        player.bus.players.remove(player);
+        player.bus = null;
+    }
+
+    // Players of `bus` and of the buses under it apply their new output gain
+    private void apply(Bus bus) {
+        for (Bus child : buses.values()) {
+            if (child != bus && child.parent != bus) { continue; }
+            for (int i = child.players.size() - 1; i >= 0; i--) {
+                if (i >= child.players.size()) { continue; } // a player released while applying its gain
+                child.players.get(i).onOutputGainChanged();
+            }
+        }
+    }
+
+    // -------------------------------
+    // ----------- Ducking -----------
+    // -------------------------------
+
+    // Replaces the rule between these buses, a gain of 1 removes it. Returns false for an unknown bus.
+    public boolean setDucking(String triggerName, String targetName, float gain, long attackMs, long releaseMs) {
+        Bus trigger = buses.get(triggerName);
+        Bus target = buses.get(targetName);
+        if (trigger == null || target == null || trigger == target) { return false; }
+
+        DuckingRule rule = null;
+        for (DuckingRule existing : rules) {
+            if (existing.trigger == trigger && existing.target == target) {
+                rule = existing;
+                break;
+            }
+        }
+        if (rule == null) {
+            rule = new DuckingRule();
+            rule.trigger = trigger;
+            rule.target = target;
+            rules.add(rule);
+        }
+        rule.gain = Math.max(0f, Math.min(1f, gain));
+        rule.depth = Math.max(1f - rule.gain, 1f - rule.level);
+        rule.attackMs = Math.max(0, attackMs);
+        rule.releaseMs = Math.max(0, releaseMs);
+        schedule();
+        return true;
+    }
+
+    private void schedule() {
+        if (!scheduled && !rules.isEmpty()) {
+            scheduled = true;
+            audioThread.postDelayed(stepRunnable, 0);
+        }
+    }
+
+    // Ducking levels move linearly toward their rule gain (trigger active) or back to 1, down in attackMs
+    // and up in releaseMs, then rules of gain 1 whose level is back to 1 are removed
+    private void step() {
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            DuckingRule rule = rules.get(i);
+            float goal = rule.trigger.isActive() ? rule.gain : 1f;
+            if (rule.level > goal) {
+                rule.level = rule.attackMs == 0 ? goal : Math.max(goal, rule.level - rule.depth * STEP_MS / rule.attackMs);
+            } else if (rule.level < goal) {
+                rule.level = rule.releaseMs == 0 ? goal : Math.min(goal, rule.level + rule.depth * STEP_MS / rule.releaseMs);
+            }
+            if (rule.gain == 1f && rule.level == 1f) {
+                rules.remove(i);
+            }
+        }
+
+        for (Bus bus : buses.values()) {
+            float duck = 1f;
+            for (DuckingRule rule : rules) {
+                if (rule.target == bus) { duck = Math.min(duck, rule.level); }
+            }
+            if (duck != bus.duck) {
+                bus.duck = duck;
+                apply(bus);
+            }
+        }
+
+        scheduled = !rules.isEmpty();
+        if (scheduled) {
+            audioThread.postDelayed(stepRunnable, STEP_MS);
+        }
+    }
+}
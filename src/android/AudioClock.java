@@ -0,0 +1,28 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Monotonic clock shared by JS and native scheduling, in milliseconds since the plugin was loaded.
+// JS reads it once to compute its offset to performance.now() and then converts times without bridge calls.
+public class AudioClock {
+
+    private static final long ORIGIN_NANOS = System.nanoTime();
+
+    public static double nowMs() {
+        return (System.nanoTime() - ORIGIN_NANOS) / 1000000.0;
+    }
+
+    public static long nowNanos() {
+        return System.nanoTime() - ORIGIN_NANOS;
+    }
+
+    public static long nowMillis() {
+        return (System.nanoTime() - ORIGIN_NANOS) / 1000000;
+    }
+
+    public static long toNanos(double clockTimeMs) {
+        return (long) (clockTimeMs * 1000000.0);
+    }
+}
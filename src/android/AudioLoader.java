@@ -0,0 +1,320 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Opens audio files and prepares players away from the audio thread. A load never runs on the caller
+// (the audio thread): past MAX_QUEUED_LOADS waiting loads, the player is reported in ERROR instead.
+// PCM players loading a file already being decoded for another PCM player wait for that load and share
+// its sound rather than decoding the file again (SoundPlayers share theirs through the NamedSoundPool).
+public class AudioLoader {
+
+    // Log TAG definition
+    public static final String TAG = AudioLoader.class.getSimpleName();
+
+    // Constant(s)
+    final private static int MAX_THREADS = 2;
+    final private static long THREAD_KEEP_ALIVE_SECONDS = 10;
+    final static int MAX_QUEUED_LOADS = 1024;
+
+    private final Yanap yanap;
+    private final File cacheDir; // base of the relative paths
+    private final ThreadPoolExecutor executor;
+
+    // Stamp of the packaged files for the PcmCache keys, read once
+    private long packageStamp = -1;
+
+    // uid -> file path of every load currently queued or running
+    private final ConcurrentHashMap<String, String> inFlight = new ConcurrentHashMap<String, String>();
+
+    // file path -> load of a PCM player other PCM players of the same file wait for, audio thread only
+    private final HashMap<String, SharedLoad> sharedLoads = new HashMap<String, SharedLoad>();
+
+    private static class SharedLoad {
+        final YanapPlayer leader;
+        final ArrayList<YanapPlayer> waiters = new ArrayList<YanapPlayer>();
+        final ArrayList<String> waiterUids = new ArrayList<String>();
+        volatile long fileLength = -1;
+
+        SharedLoad(YanapPlayer leader) {
+            this.leader = leader;
+        }
+    }
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public AudioLoader(Yanap yanap, File cacheDir) {
+        this.yanap = yanap;
+        this.cacheDir = cacheDir;
+        executor = new ThreadPoolExecutor(
+                MAX_THREADS, MAX_THREADS,
+                THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(MAX_QUEUED_LOADS),
+                new LoaderThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // -------------------------------
+    // ---------- Scheduling ---------
+    // -------------------------------
+
+    // Called on the audio thread, returns true if the load has been scheduled (or was not needed),
+    // false if a load of the same uid is already in flight: the duplicate is dropped, the player
+    // gets the statuses of the pending load
+    public boolean load(final YanapPlayer player, final String uid, final String filePath) {
+        String pendingPath = inFlight.putIfAbsent(uid, filePath);
+        if (pendingPath != null) {
+            return false;
+        }
+        if (player.state != Yanap.STATE.LOADING) { // failed during its creation
+            inFlight.remove(uid);
+            atlasDone(player);
+            return true;
+        }
+        player.filePath = filePath;
+        player.loadStartNanos = AudioClock.nowNanos();
+        if (player.loadShared()) {
+            inFlight.remove(uid);
+            atlasDone(player);
+            return true;
+        }
+        final SharedLoad shared;
+        if (player.loadsPcm() && player.atlasEntry == null) {
+            SharedLoad pending = sharedLoads.get(filePath);
+            if (pending != null) { // gets the sound decoded for the first player
+                pending.waiters.add(player);
+                pending.waiterUids.add(uid);
+                return true;
+            }
+            shared = new SharedLoad(player);
+        } else {
+            shared = null;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runLoad(player, uid, filePath, shared);
+                    } finally {
+                        inFlight.remove(uid);
+                        if (shared != null) {
+                            postSharedLoadDone(filePath, shared);
+                        }
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(uid);
+            atlasDone(player);
+            if (!executor.isShutdown()) { // else the plugin is being destroyed
+                Log.e(TAG, "Too many files loading, " + filePath + " not loaded");
+                player.loadFailed("too many files loading (" + MAX_QUEUED_LOADS + " waiting)");
+            }
+            return true;
+        }
+        if (shared != null) {
+            sharedLoads.put(filePath, shared);
+        }
+        return true;
+    }
+
+    // Once the first player of a shared load is done (on the audio thread, after its own LOADED or ERROR),
+    // the waiting players take its sound. If it has none (failed, released meanwhile) they load the file themselves.
+    private void postSharedLoadDone(final String filePath, final SharedLoad shared) {
+        shared.leader.audioThread.enqueue(new Runnable() {
+            @Override
+            public void run() {
+                if (sharedLoads.get(filePath) == shared) {
+                    sharedLoads.remove(filePath);
+                }
+                PcmSound sound = shared.leader.getPcmSound();
+                for (int i = 0; i < shared.waiters.size(); i++) {
+                    YanapPlayer waiter = shared.waiters.get(i);
+                    String uid = shared.waiterUids.get(i);
+                    inFlight.remove(uid);
+                    if (waiter.state != Yanap.STATE.LOADING) {
+                        continue;
+                    }
+                    if (sound == null) {
+                        load(waiter, uid, filePath);
+                        continue;
+                    }
+                    waiter.cacheKey = shared.leader.cacheKey;
+                    if (shared.fileLength >= 0) {
+                        yanap.sendFileLength(uid, shared.fileLength);
+                    }
+                    waiter.onDecoded(sound);
+                }
+            }
+        });
+    }
+
+    // Returns true if a load of `filePath` for `uid` is queued or running
+    public boolean isLoading(String uid, String filePath) {
+        return filePath.equals(inFlight.get(uid));
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        inFlight.clear();
+    }
+
+    // -------------------------------
+    // ---------- Loader task --------
+    // -------------------------------
+
+    private void runLoad(final YanapPlayer player, String uid, String filePath, SharedLoad shared) {
+        if (player.state != Yanap.STATE.LOADING) { // released before we got a chance to load it
+            atlasDone(player);
+            return;
+        }
+
+        final AudioAtlas.Entry atlasEntry = player.atlasEntry;
+        final boolean sharedAtlas = atlasEntry != null && !player.readsWhilePlaying();
+        AudioBackend.Source source;
+        try {
+            if (atlasEntry == null) {
+                source = openFile(filePath);
+            } else {
+                source = sharedAtlas ? atlasEntry.atlas.open(atlasEntry, this) : atlasEntry.atlas.openOwn(atlasEntry, this);
+            }
+        } catch (IOException e) {
+            atlasDone(player);
+            postLoadFailed(player, e.getMessage());
+            return;
+        } catch (RuntimeException e) { // e.g. SecurityException
+            Log.e(TAG, "Unable to open " + filePath, e);
+            atlasDone(player);
+            postLoadFailed(player, "unable to open file `" + filePath + "`: " + e);
+            return;
+        }
+
+        // players only need the source while loading, it is closed as soon as they are done with it
+        // (atlas entries of sounds share the source of their atlas, closed with its last entry)
+        LeakTracker.Token fdToken = sharedAtlas ? null : LeakTracker.track(source, LeakTracker.KIND_FILE_DESCRIPTOR, filePath);
+        try {
+            yanap.sendFileLength(uid, source.getLength());
+            if (shared != null) {
+                shared.fileLength = source.getLength();
+            }
+            player.cacheKey = PcmCache.key(filePath, source.getLength(), fileStamp(atlasEntry != null ? atlasEntry.atlas.filePath : filePath));
+            player.load(source);
+        } catch (RuntimeException e) { // e.g. IllegalStateException of a MediaPlayer, the player would stay LOADING
+            Log.e(TAG, "Unable to load " + filePath, e);
+            postLoadFailed(player, "unable to load file `" + filePath + "`: " + e);
+        } finally {
+            if (sharedAtlas) {
+                atlasEntry.atlas.close(atlasEntry);
+            } else {
+                close(source);
+                LeakTracker.close(fdToken);
+                atlasDone(player);
+            }
+        }
+    }
+
+    private static void postLoadFailed(final YanapPlayer player, final String message) {
+        player.audioThread.enqueue(new Runnable() {
+            @Override
+            public void run() {
+                if (player.state != Yanap.STATE.RELEASED) {
+                    player.loadFailed(message);
+                }
+            }
+        });
+    }
+
+    private static void atlasDone(YanapPlayer player) {
+        if (player.atlasEntry != null) {
+            player.atlasEntry.atlas.done(player.atlasEntry);
+        }
+    }
+
+    private static void close(AudioBackend.Source source) {
+        try {
+            source.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to close file descriptor", e);
+        }
+    }
+
+    // -------------------------------
+    // --------- File opening --------
+    // -------------------------------
+
+    AudioBackend.Source openFile(String filePath) throws IOException {
+        if (filePath.toLowerCase().startsWith(Yanap.LOCAL_PATH_PREFIX)) { // apk relative path
+            try {
+                return Yanap.getAudioBackend().openAsset(filePath.substring(Yanap.LOCAL_PATH_PREFIX.length()));
+            } catch (IOException e) {
+                throw new IOException("unable to open file `" + filePath + "`");
+            }
+        }
+
+        File cacheFile = resolveFile(filePath);
+        try {
+            return Yanap.getAudioBackend().openFile(cacheFile);
+        } catch (IOException e) {
+            throw new IOException("unable to open file `" + filePath + "` at `" + cacheFile.getAbsolutePath() + "`");
+        }
+    }
+
+    private File resolveFile(String filePath) {
+        if (filePath.toLowerCase().startsWith("file://")) { // full absolute path
+            return new File(URI.create(filePath));
+        }
+        return new File(cacheDir, filePath); // application cache relative path
+    }
+
+    // Changes when the content of the file may have changed: modification time of the file,
+    // update time of the application for packaged files
+    private long fileStamp(String filePath) {
+        if (!filePath.toLowerCase().startsWith(Yanap.LOCAL_PATH_PREFIX)) {
+            return resolveFile(filePath).lastModified();
+        }
+        synchronized (this) {
+            if (packageStamp == -1) {
+                packageStamp = Yanap.getAudioBackend().getPackageStamp();
+            }
+            return packageStamp;
+        }
+    }
+
+    // -------------------------------
+    // -------- Thread factory -------
+    // -------------------------------
+
+    private static class LoaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "YanapLoader-" + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
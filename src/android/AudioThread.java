@@ -0,0 +1,132 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Single thread owning every player. JS commands, results of the loader threads, scheduled plays and
+// the Stream/Samples callbacks (their objects are created on this thread, so they use its loop)
+// and the timers of the fader, the buses and the event channel all run here, one at a time. Player states and pending play/release flags therefore have a single writer.
+// Other threads hand work over through a lock-free queue, drained in order by the thread. Scheduled plays and
+// stops go through a second queue, drained first, so that a burst of commands does not delay them.
+public class AudioThread {
+
+    // Log TAG definition
+    public static final String TAG = AudioThread.class.getSimpleName();
+
+    private final AudioBackend.Loop loop;
+    private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final ConcurrentLinkedQueue<Runnable> urgentCommands = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicBoolean urgentDrainScheduled = new AtomicBoolean(false);
+
+    private final Runnable drainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private final Runnable urgentDrainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            drainUrgent();
+        }
+    };
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public AudioThread() {
+        loop = Yanap.getAudioBackend().createLoop("YanapAudio");
+    }
+
+    public boolean isCurrentThread() {
+        return loop.isCurrentThread();
+    }
+
+    // Commands already enqueued still run
+    public void quit() {
+        enqueue(new Runnable() {
+            @Override
+            public void run() {
+                commands.clear();
+                urgentCommands.clear();
+                loop.quit();
+            }
+        });
+    }
+
+    // -------------------------------
+    // ----------- Commands ----------
+    // -------------------------------
+
+    // Callable from any thread, commands run in the order they were enqueued
+    public void enqueue(Runnable command) {
+        commands.offer(command);
+        if (drainScheduled.compareAndSet(false, true)) {
+            loop.post(drainRunnable);
+        }
+    }
+
+    // Callable from any thread, runs before the commands and timers waiting at that time. Urgent commands
+    // run in the order they were enqueued, and may overtake commands enqueued earlier with `enqueue`.
+    public void enqueueUrgent(Runnable command) {
+        urgentCommands.offer(command);
+        if (urgentDrainScheduled.compareAndSet(false, true)) {
+            loop.postAtFront(urgentDrainRunnable);
+        }
+    }
+
+    // -------------------------------
+    // ------------ Timers -----------
+    // -------------------------------
+
+    // `timer` runs on the audio thread once `delayMs` elapsed, unless removed meanwhile
+    public void postDelayed(Runnable timer, long delayMs) {
+        loop.postDelayed(timer, delayMs);
+    }
+
+    public void removeCallbacks(Runnable timer) {
+        loop.removeCallbacks(timer);
+    }
+
+    // The flag is cleared before polling, so a command enqueued during the drain either
+    // gets polled by it or schedules the next one. Urgent commands are checked between two commands.
+    private void drain() {
+        drainScheduled.set(false);
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            run(command);
+            if (!urgentCommands.isEmpty()) {
+                drainUrgent();
+            }
+        }
+    }
+
+    private void drainUrgent() {
+        urgentDrainScheduled.set(false);
+        Runnable command;
+        while ((command = urgentCommands.poll()) != null) {
+            run(command);
+        }
+    }
+
+    private static void run(Runnable command) {
+        try {
+            command.run();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Audio command failed", e); // the thread keeps running the next commands
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONArray;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Queue of native to JS events, sent as one array of [msgType, audioUid, value, additionalInfo] tuples.
+// With a flush interval of 0 every event is sent right away, otherwise events are buffered for that long
+// and, if coalescing is enabled, only the latest status of each audio instance is kept. Buffered events are
+// flushed by a timer of the audio thread.
+public class EventChannel {
+
+    // Log TAG definition
+    public static final String TAG = EventChannel.class.getSimpleName();
+
+    // Message types
+    public static final String MSG_STATUS_UPDATE = "statusUpdate";
+    public static final String MSG_FILE_LENGTH = "fileLength";
+    public static final String MSG_CACHE_STATS = "cacheStats";
+    public static final String MSG_LEAK_STATS = "leakStats";
+    public static final String MSG_METRICS = "metrics";
+    public static final String MSG_ERROR = "error";
+
+    // We retain this callback to be able to emit messages to javascript at anytime
+    private Yanap.Callback callback;
+
+    private final AudioThread audioThread;
+
+    // Configuration
+    private long flushInterval = 0;
+    private boolean coalesce = false;
+    private EnumSet<Yanap.STATE> mutedStates = EnumSet.noneOf(Yanap.STATE.class);
+
+    // Events waiting for the next flush, and position of the pending status of each audio instance
+    private ArrayList<JSONArray> pending = new ArrayList<JSONArray>();
+    private final HashMap<String, Integer> pendingStatusIndex = new HashMap<String, Integer>();
+    private boolean flushScheduled = false;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public EventChannel(AudioThread audioThread) {
+        this.audioThread = audioThread;
+    }
+
+    // -------------------------------
+    // -------- Configuration --------
+    // -------------------------------
+
+    public synchronized void setCallback(Yanap.Callback callback) {
+        this.callback = callback;
+    }
+
+    public synchronized void configure(long flushInterval, boolean coalesce, EnumSet<Yanap.STATE> mutedStates) {
+        this.flushInterval = Math.max(0, flushInterval);
+        this.coalesce = coalesce;
+        this.mutedStates = mutedStates;
+    }
+
+    // -------------------------------
+    // ----------- Events ------------
+    // -------------------------------
+
+    public void statusUpdate(String uid, Yanap.STATE state, String additionalInfo) {
+        JSONArray event = new JSONArray();
+        event.put(MSG_STATUS_UPDATE);
+        event.put(uid);
+        event.put(state.toString());
+        if (!additionalInfo.equals("")) {
+            event.put(additionalInfo);
+        }
+
+        synchronized (this) {
+            if (mutedStates.contains(state)) { return; }
+            Integer index = pendingStatusIndex.get(uid);
+            if (coalesce && index != null) {
+                pending.set(index, event);
+            } else {
+                push(event);
+                index = pending.size() - 1;
+            }
+            // an error always reaches JS, next statuses are queued after it
+            if (state == Yanap.STATE.ERROR) {
+                pendingStatusIndex.remove(uid);
+            } else {
+                pendingStatusIndex.put(uid, index);
+            }
+        }
+        flushIfImmediate();
+    }
+
+    // Status of an instance only known by its int handle (e.g. not found), JS resolves its uid.
+    // Not coalesced: only used for errors.
+    public void statusUpdateByHandle(int handle, Yanap.STATE state, String additionalInfo) {
+        JSONArray event = new JSONArray();
+        event.put(MSG_STATUS_UPDATE);
+        event.put(handle);
+        event.put(state.toString());
+        if (!additionalInfo.equals("")) {
+            event.put(additionalInfo);
+        }
+
+        synchronized (this) {
+            if (mutedStates.contains(state)) { return; }
+            push(event);
+        }
+        flushIfImmediate();
+    }
+
+    public void fileLength(String uid, long length) {
+        JSONArray event = new JSONArray();
+        event.put(MSG_FILE_LENGTH);
+        event.put(uid);
+        event.put(length);
+
+        synchronized (this) {
+            push(event);
+        }
+        flushIfImmediate();
+    }
+
+    // Message not related to an audio instance
+    public void globalMessage(String msgType, Object value) {
+        JSONArray event = new JSONArray();
+        event.put(msgType);
+        event.put("");
+        event.put(value);
+
+        synchronized (this) {
+            push(event);
+        }
+        flushIfImmediate();
+    }
+
+    // -------------------------------
+    // ----------- Sending -----------
+    // -------------------------------
+
+    // Must be called while holding the lock
+    private void push(JSONArray event) {
+        pending.add(event);
+        if (flushInterval > 0 && !flushScheduled) {
+            flushScheduled = true;
+            audioThread.postDelayed(flushRunnable, flushInterval);
+        }
+    }
+
+    private void flushIfImmediate() {
+        boolean immediate;
+        synchronized (this) {
+            immediate = flushInterval == 0;
+        }
+        if (immediate) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        ArrayList<JSONArray> events;
+        Yanap.Callback target;
+        synchronized (this) {
+            if (flushScheduled) {
+                audioThread.removeCallbacks(flushRunnable);
+                flushScheduled = false;
+            }
+            if (pending.isEmpty()) { return; }
+            events = pending;
+            pending = new ArrayList<JSONArray>();
+            pendingStatusIndex.clear();
+            target = callback;
+        }
+        if (target == null) { return; }
+        target.keep(new JSONArray(events)); // we want to retain this callback forever
+    }
+}
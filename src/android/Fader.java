@@ -0,0 +1,160 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import java.util.ArrayList;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Volume ramps applied natively on the audio thread, so that a fade or a crossfade costs a single bridge call
+// and does not depend on the JS thread being free. A player has at most one fade at a time.
+public class Fader {
+
+    // Log TAG definition
+    public static final String TAG = Fader.class.getSimpleName();
+
+    // Curves
+    public static final int CURVE_LINEAR = 0;
+    public static final int CURVE_EQUAL_POWER = 1; // sine/cosine, keeps the perceived loudness of a crossfade constant
+
+    // Constant(s)
+    final private static long STEP_MS = 10;
+
+    private final AudioThread audioThread;
+    private final ArrayList<Fade> fades = new ArrayList<Fade>();
+    private boolean scheduled = false;
+
+    private final Runnable stepRunnable = new Runnable() {
+        @Override
+        public void run() {
+            step();
+        }
+    };
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public Fader(AudioThread audioThread) {
+        this.audioThread = audioThread;
+    }
+
+    // -------------------------------
+    // ------------ Fade -------------
+    // -------------------------------
+
+    private static class Fade {
+        YanapPlayer player;
+        float from1, from2;
+        float to1, to2;
+        long startTime;
+        long duration;
+        int curve;
+        boolean stopAtEnd; // fade out of a crossfade, the player is stopped then set back to its volume
+        float restore1, restore2;
+    }
+
+    // -------------------------------
+    // ----------- Fading ------------
+    // -------------------------------
+
+    public void fadeTo(YanapPlayer player, float volume1, float volume2, long durationMs, int curve) {
+        remove(player);
+        start(player, volume1, volume2, durationMs, curve, false, 0, 0);
+    }
+
+    // Starts `to` from silence (or from its current volume if it is already playing) up to its volume,
+    // while `from` fades out and is stopped
+    public void crossfade(YanapPlayer from, YanapPlayer to, long durationMs, int curve) {
+        Fade previous = remove(to);
+        float target1 = previous != null && previous.stopAtEnd ? previous.restore1 : to.volume1;
+        float target2 = previous != null && previous.stopAtEnd ? previous.restore2 : to.volume2;
+        if (to.state != Yanap.STATE.PLAYING && to.state != Yanap.STATE.LOOPING) {
+            to.setVolume(0f, 0f);
+            to.play();
+        }
+        start(to, target1, target2, durationMs, curve, false, 0, 0);
+
+        previous = remove(from);
+        float restore1 = previous != null && previous.stopAtEnd ? previous.restore1 : from.volume1;
+        float restore2 = previous != null && previous.stopAtEnd ? previous.restore2 : from.volume2;
+        start(from, 0f, 0f, durationMs, curve, true, restore1, restore2);
+    }
+
+    // Called when JS changes the volume, stops or releases the player itself
+    public void cancel(YanapPlayer player) {
+        remove(player);
+    }
+
+    private void start(YanapPlayer player, float volume1, float volume2, long durationMs, int curve,
+                       boolean stopAtEnd, float restore1, float restore2) {
+        Fade fade = new Fade();
+        fade.player = player;
+        fade.from1 = player.volume1;
+        fade.from2 = player.volume2;
+        fade.to1 = volume1;
+        fade.to2 = volume2;
+        fade.startTime = AudioClock.nowMillis();
+        fade.duration = Math.max(0, durationMs);
+        fade.curve = curve;
+        fade.stopAtEnd = stopAtEnd;
+        fade.restore1 = restore1;
+        fade.restore2 = restore2;
+        fades.add(fade);
+        if (!scheduled) {
+            scheduled = true;
+            audioThread.postDelayed(stepRunnable, 0);
+        }
+    }
+
+    private Fade remove(YanapPlayer player) {
+        for (int i = 0; i < fades.size(); i++) {
+            if (fades.get(i).player == player) {
+                return fades.remove(i);
+            }
+        }
+        return null;
+    }
+
+    // -------------------------------
+    // ------------ Steps ------------
+    // -------------------------------
+
+    private void step() {
+        long now = AudioClock.nowMillis();
+        for (int i = fades.size() - 1; i >= 0; i--) {
+            if (i >= fades.size()) { continue; } // a player released by the previous step cancelled its fade
+            Fade fade = fades.get(i);
+            YanapPlayer player = fade.player;
+            if (player.state == Yanap.STATE.RELEASED || player.state == Yanap.STATE.ERROR) {
+                fades.remove(i);
+                continue;
+            }
+            float progress = fade.duration == 0 ? 1f : Math.min(1f, (float) (now - fade.startTime) / fade.duration);
+            boolean fadingIn = fade.to1 + fade.to2 >= fade.from1 + fade.from2;
+            float shape = shape(fade.curve, progress, fadingIn);
+            player.setVolume(fade.from1 + (fade.to1 - fade.from1) * shape, fade.from2 + (fade.to2 - fade.from2) * shape);
+            if (progress < 1f) { continue; }
+            fades.remove(i);
+            if (fade.stopAtEnd) {
+                player.stop();
+                player.setVolume(fade.restore1, fade.restore2);
+            }
+        }
+        scheduled = !fades.isEmpty();
+        if (scheduled) {
+            audioThread.postDelayed(stepRunnable, STEP_MS);
+        }
+    }
+
+    // Position between the start (0) and the target (1) volumes
+    private static float shape(int curve, float progress, boolean fadingIn) {
+        if (curve != CURVE_EQUAL_POWER) { return progress; }
+        double angle = progress * Math.PI / 2;
+        return (float) (fadingIn ? Math.sin(angle) : 1 - Math.cos(angle));
+    }
+}
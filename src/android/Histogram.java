@@ -0,0 +1,88 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Distribution of durations in milliseconds over fixed power of two buckets: recording a value is a few
+// comparisons and increments, without allocation. Percentiles are the upper bound of their bucket.
+// Not synchronized, the metrics are recorded and read on the audio thread.
+public class Histogram {
+
+    // Upper bounds (in ms) of every bucket but the last one, which has no bound
+    private static final double[] BOUNDS = { 0.5, 1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024, 2048 };
+
+    private final long[] buckets = new long[BOUNDS.length + 1];
+    private long count = 0;
+    private double sum = 0;
+    private double max = 0;
+
+    // -------------------------------
+    // ---------- Recording ----------
+    // -------------------------------
+
+    public void record(double ms) {
+        int bucket = 0;
+        while (bucket < BOUNDS.length && ms > BOUNDS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket]++;
+        count++;
+        sum += ms;
+        if (ms > max) {
+            max = ms;
+        }
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(buckets, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    // -------------------------------
+    // ----------- Reading -----------
+    // -------------------------------
+
+    public long getCount() {
+        return count;
+    }
+
+    // `percentile` in ]0, 100]
+    public double getPercentile(double percentile) {
+        if (count == 0) { return 0; }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BOUNDS.length; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank) { return Math.min(BOUNDS[bucket], max); }
+        }
+        return max;
+    }
+
+    // { count, mean, max, p50, p95, p99, buckets }
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", count);
+        json.put("mean", count == 0 ? 0 : sum / count);
+        json.put("max", max);
+        json.put("p50", getPercentile(50));
+        json.put("p95", getPercentile(95));
+        json.put("p99", getPercentile(99));
+        JSONArray counts = new JSONArray();
+        for (long bucketCount : buckets) {
+            counts.put(bucketCount);
+        }
+        json.put("buckets", counts);
+        return json;
+    }
+}
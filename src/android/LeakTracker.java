@@ -0,0 +1,103 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import android.util.Log;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Counts the players and file descriptors currently open, and reports the ones garbage collected without
+// having been released/closed (same idea as java.lang.ref.Cleaner, which Android only has from API 33).
+// Nothing is released from here: resources are released explicitly, this only detects the code paths that forget.
+public class LeakTracker {
+
+    // Log TAG definition
+    public static final String TAG = LeakTracker.class.getSimpleName();
+
+    // Kinds of tracked resources
+    public static final int KIND_PLAYER = 0;
+    public static final int KIND_FILE_DESCRIPTOR = 1;
+    private static final int KIND_COUNT = 2;
+
+    private static final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    // Tokens of the open resources, keeps them reachable until they are closed or collected
+    private static final Set<Token> open = Collections.synchronizedSet(new HashSet<Token>());
+
+    private static final long[] openCounts = new long[KIND_COUNT];
+    private static final long[] leakCounts = new long[KIND_COUNT];
+
+    // -------------------------------
+    // ------------ Token ------------
+    // -------------------------------
+
+    public static class Token extends PhantomReference<Object> {
+        final int kind;
+        final String description;
+
+        Token(Object resource, int kind, String description) {
+            super(resource, queue);
+            this.kind = kind;
+            this.description = description;
+        }
+    }
+
+    // -------------------------------
+    // ---------- Tracking -----------
+    // -------------------------------
+
+    public static Token track(Object resource, int kind, String description) {
+        pollLeaks();
+        Token token = new Token(resource, kind, description);
+        open.add(token);
+        synchronized (LeakTracker.class) {
+            openCounts[kind]++;
+        }
+        return token;
+    }
+
+    // Closing twice is harmless
+    public static void close(Token token) {
+        if (token == null || !open.remove(token)) { return; }
+        token.clear();
+        synchronized (LeakTracker.class) {
+            openCounts[token.kind]--;
+        }
+    }
+
+    // [open players, open file descriptors, leaked players, leaked file descriptors]
+    public static long[] getCounts() {
+        pollLeaks();
+        synchronized (LeakTracker.class) {
+            return new long[] {
+                    openCounts[KIND_PLAYER], openCounts[KIND_FILE_DESCRIPTOR],
+                    leakCounts[KIND_PLAYER], leakCounts[KIND_FILE_DESCRIPTOR]
+            };
+        }
+    }
+
+    // Tokens enqueued while still open belong to resources collected without being closed
+    private static void pollLeaks() {
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            Token token = (Token) reference;
+            if (!open.remove(token)) { continue; }
+            synchronized (LeakTracker.class) {
+                openCounts[token.kind]--;
+                leakCounts[token.kind]++;
+            }
+            Log.w(TAG, "Leaked " + (token.kind == KIND_PLAYER ? "player" : "file descriptor") + ": " + token.description);
+        }
+    }
+}
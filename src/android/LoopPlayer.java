@@ -4,10 +4,6 @@ package cordovaPluginYanap;
 // ----------- Imports -----------
 // -------------------------------
 
-import android.content.res.AssetFileDescriptor;
-import android.media.AudioManager;
-import android.media.MediaPlayer;
-
 import java.io.IOException;
 
 // -------------------------------
@@ -19,109 +15,113 @@ public class LoopPlayer extends YanapPlayer {
     // Log TAG definition
     public static final String TAG = LoopPlayer.class.getSimpleName();
 
-    // SDK >= 16 is required to use the method setNextMediaPlayer
-    private static boolean gaplessLoopSupported = android.os.Build.VERSION.SDK_INT >= 16;
+    // Without gapless support (SDK < 16) a single looping stream is used
+    private final boolean gaplessLoopSupported = Yanap.getAudioBackend().supportsGaplessLoop();
+
+    // Ping-pong pair: the player that finished is rewound and queued again behind the other one,
+    // so a loop boundary never allocates nor prepares a MediaPlayer
+    private AudioBackend.Stream mCurrentPlayer = null;
+    private AudioBackend.Stream mNextPlayer = null;
 
-    private MediaPlayer mCurrentPlayer = null;
-    private MediaPlayer mNextPlayer = null;
-    private AssetFileDescriptor afd;
+    // Loop boundary timing, measured on the completion callbacks
+    private int durationMs = 0;
+    private long loopStartNanos = 0; // AudioClock time at which the current iteration started, 0 when stopped
 
     private boolean playPending = false;
     private boolean releasePending = false;
-    private boolean secondLoopLoading = false;
 
     // -------------------------------
     // --------- Constructor ---------
     // -------------------------------
 
-    public LoopPlayer(Yanap yanap, AssetFileDescriptor afd, String uid, float volume) {
+    public LoopPlayer(Yanap yanap, String uid, float volume) {
         super(yanap, uid, volume);
         stateUpdate(Yanap.STATE.LOADING);
-        this.afd = afd;
-
-        mCurrentPlayer = new MediaPlayer();
-        mCurrentPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
-            @Override
-            public void onPrepared(MediaPlayer mediaPlayer) {
-                if (state == Yanap.STATE.ERROR) { return; }
-                stateUpdate(Yanap.STATE.LOADED);
-                if (playPending && !releasePending) {
-                    play();
-                }
-                if (releasePending) {
-                    release();
-                }
-            }
-        });
+
+        mCurrentPlayer = StreamPool.acquire();
+        mCurrentPlayer.setListener(streamListener);
+        if (gaplessLoopSupported) {
+            mNextPlayer = StreamPool.acquire();
+            mNextPlayer.setListener(streamListener);
+        }
+    }
+
+    // -------------------------------
+    // ----------- Loading -----------
+    // -------------------------------
+
+    @Override
+    public boolean readsWhilePlaying() {
+        return true;
+    }
+
+    @Override
+    public void load(AudioBackend.Source source) {
         try {
-            mCurrentPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-            mCurrentPlayer.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
-            mCurrentPlayer.setVolume(volume1, volume2);
-            mCurrentPlayer.prepare();
+            // the second player is prepared first, LOADED is only sent once both are ready
             if (gaplessLoopSupported) {
-                createNextMediaPlayer();
-            } else {
-                mCurrentPlayer.setLooping(true);
+                prepare(mNextPlayer, source);
             }
+            prepare(mCurrentPlayer, source);
         } catch (IOException e) {
-            stateUpdate(Yanap.STATE.ERROR, "unable to load file");
+            postStateUpdate(Yanap.STATE.ERROR, "unable to load file");
+            return;
+        }
+        if (gaplessLoopSupported) {
+            linkNextMediaPlayer();
+        } else {
+            mCurrentPlayer.setLooping(true);
         }
     }
 
+    private void prepare(AudioBackend.Stream mediaPlayer, AudioBackend.Source source) throws IOException {
+        mediaPlayer.setDataSource(source);
+        mediaPlayer.setVolume(volume1 * outputGain(), volume2 * outputGain());
+        mediaPlayer.prepare();
+    }
+
     // -------------------------------
-    // ------ Next loop creation -----
+    // ------ Next loop linking ------
     // -------------------------------
 
-    private void createNextMediaPlayer() {
-        if (android.os.Build.VERSION.SDK_INT < 16) { // required by compiler but already filtered with gaplessLoopSupported
-            return;
-        }
-        mNextPlayer = new MediaPlayer();
-        mNextPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
-            @Override
-            public void onPrepared(MediaPlayer mediaPlayer) {
-                secondLoopLoading = false;
-                if (releasePending) {
-                    release();
-                }
+    private void linkNextMediaPlayer() {
+        mCurrentPlayer.setNext(mNextPlayer);
+    }
+
+    // -------------------------------
+    // -------- Stream events --------
+    // -------------------------------
+
+    private final AudioBackend.Stream.Listener streamListener = new AudioBackend.Stream.Listener() {
+        // the next player is prepared first, LOADED is sent once the current one is ready
+        @Override
+        public void onPrepared(AudioBackend.Stream stream) {
+            if (state == Yanap.STATE.ERROR || stream != mCurrentPlayer) { return; }
+            durationMs = stream.getDuration();
+            stateUpdate(Yanap.STATE.LOADED);
+            if (playPending && !releasePending) {
+                play();
             }
-        });
-        try {
-            mNextPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-            mNextPlayer.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
-            mNextPlayer.setVolume(volume1, volume2);
-            secondLoopLoading = true;
-            mNextPlayer.prepare();
-        } catch (IOException e) {
-            secondLoopLoading = false;
             if (releasePending) {
                 release();
-                return;
             }
-            if (mCurrentPlayer.isPlaying()) mCurrentPlayer.stop();
-            mCurrentPlayer.reset();
-            mCurrentPlayer.release();
-            mNextPlayer.reset();
-            mNextPlayer.release();
-            stateUpdate(Yanap.STATE.ERROR, "unable to prepare next loop");
-            return;
         }
-        mCurrentPlayer.setNextMediaPlayer(mNextPlayer);
-        mCurrentPlayer.setOnCompletionListener(onCompletionListener);
-    }
-
-    // -------------------------------
-    // ----- Current track ended -----
-    // -------------------------------
 
-    private MediaPlayer.OnCompletionListener onCompletionListener = new MediaPlayer.OnCompletionListener() {
+        // Current track ended: the next player already started, the finished one (in PlaybackCompleted state)
+        // is rewound and becomes the next player of the one now playing
         @Override
-        public void onCompletion(MediaPlayer mediaPlayer) {
-            mediaPlayer.reset();
-            mediaPlayer.release();
+        public void onCompletion(AudioBackend.Stream stream) {
+            if (state == Yanap.STATE.RELEASED || !gaplessLoopSupported || stream != mCurrentPlayer) { return; }
             mCurrentPlayer = mNextPlayer;
+            mNextPlayer = stream;
+            mNextPlayer.seekTo(0);
+            mCurrentPlayer.setNext(mNextPlayer);
+            if (loopStartNanos != 0 && durationMs > 0) {
+                Metrics.loopBoundaryJitter.record(Math.abs(Metrics.elapsedMs(loopStartNanos) - durationMs));
+            }
+            loopStartNanos = AudioClock.nowNanos();
+            Metrics.loops++;
             stateUpdate(Yanap.STATE.LOOPING);
-            createNextMediaPlayer();
         }
     };
 
@@ -135,11 +135,27 @@ public class LoopPlayer extends YanapPlayer {
             playPending = true;
         } else if (state == Yanap.STATE.LOADED || state == Yanap.STATE.STOPPED) {
             mCurrentPlayer.start();
+            loopStartNanos = AudioClock.nowNanos() - mCurrentPlayer.getCurrentPosition() * 1000000L;
             playPending = false;
             stateUpdate(Yanap.STATE.PLAYING);
         }
     }
 
+    @Override
+    public int getPositionMs() {
+        return isPrepared() ? mCurrentPlayer.getCurrentPosition() : -1;
+    }
+
+    @Override
+    public int getDurationMs() {
+        return isPrepared() ? durationMs : -1;
+    }
+
+    private boolean isPrepared() {
+        return state == Yanap.STATE.LOADED || state == Yanap.STATE.PLAYING
+                || state == Yanap.STATE.LOOPING || state == Yanap.STATE.STOPPED;
+    }
+
     // -------------------------------
     // ------- Interface: STOP -------
     // -------------------------------
@@ -147,8 +163,10 @@ public class LoopPlayer extends YanapPlayer {
     @Override
     public void stop() {
         playPending = false;
+        if (state == Yanap.STATE.LOADING) return;
         if (mCurrentPlayer.isPlaying()) {
             mCurrentPlayer.pause();
+            loopStartNanos = 0;
             stateUpdate(Yanap.STATE.STOPPED);
         }
     }
@@ -160,11 +178,12 @@ public class LoopPlayer extends YanapPlayer {
     @Override
     public void setVolume(float volume1, float volume2) {
         super.setVolume(volume1, volume2);
+        float gain = outputGain();
         if (mCurrentPlayer != null) {
-            mCurrentPlayer.setVolume(volume1, volume2);
+            mCurrentPlayer.setVolume(volume1 * gain, volume2 * gain);
         }
         if (mNextPlayer != null) {
-            mNextPlayer.setVolume(volume1, volume2);
+            mNextPlayer.setVolume(volume1 * gain, volume2 * gain);
         }
     }
 
@@ -176,31 +195,26 @@ public class LoopPlayer extends YanapPlayer {
     public void release() {
         if (state == Yanap.STATE.RELEASED) return;
 
-        if (state == Yanap.STATE.LOADING || secondLoopLoading) {
+        if (state == Yanap.STATE.LOADING) {
             releasePending = true;
             return;
         }
 
         playPending = false;
         releasePending = false;
-        secondLoopLoading = false;
 
         if (mCurrentPlayer != null) {
-            if (mCurrentPlayer.isPlaying()) mCurrentPlayer.stop();
-            mCurrentPlayer.reset();
-            mCurrentPlayer.release();
+            if (gaplessLoopSupported) mCurrentPlayer.setNext(null); // a pooled stream must not start another one
+            StreamPool.recycle(mCurrentPlayer);
             mCurrentPlayer = null;
         }
 
         if (mNextPlayer != null) {
-            if (mNextPlayer.isPlaying()) mNextPlayer.stop();
-            mNextPlayer.reset();
-            mNextPlayer.release();
+            if (gaplessLoopSupported) mNextPlayer.setNext(null);
+            StreamPool.recycle(mNextPlayer);
             mNextPlayer = null;
         }
 
-        // if (afd != null) afd.close(); // TODO: is this required?
-        afd = null;
         stateUpdate(Yanap.STATE.RELEASED);
         yanap = null;
         uid = null;
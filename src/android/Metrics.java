@@ -0,0 +1,92 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Global counters and histograms of the plugin, pulled by JS with the getMetrics action.
+// Everything is recorded on the audio thread, except the bridge call counter (Cordova plugin thread).
+public class Metrics {
+
+    // Log TAG definition
+    public static final String TAG = Metrics.class.getSimpleName();
+
+    // Histograms, in milliseconds
+    static final Histogram loadTime = new Histogram();           // file opened until LOADED
+    static final Histogram playLatency = new Histogram();        // bridge call received until the player started
+    static final Histogram scheduleLateness = new Histogram();   // playAt/stopAt applied after their clock time
+    static final Histogram loopBoundaryJitter = new Histogram(); // gap between the expected and the actual loop end
+
+    // Counters
+    static long plays = 0;
+    static long failedPlays = 0;  // no stream/voice left to play the sound
+    static long stolenVoices = 0; // voices stopped to play another sound
+    static long loops = 0;
+
+    private static final AtomicLong bridgeCalls = new AtomicLong(0);
+    private static long lastBridgeCalls = 0;
+    private static long lastBridgeSampleNanos = AudioClock.nowNanos();
+
+    // -------------------------------
+    // ---------- Recording ----------
+    // -------------------------------
+
+    static void bridgeCall() {
+        bridgeCalls.incrementAndGet();
+    }
+
+    static double elapsedMs(long sinceNanos) {
+        return (AudioClock.nowNanos() - sinceNanos) / 1000000.0;
+    }
+
+    // -------------------------------
+    // ----------- Reading -----------
+    // -------------------------------
+
+    // Bridge call rate is averaged since the previous call
+    static JSONObject toJson() throws JSONException {
+        long now = AudioClock.nowNanos();
+        long calls = bridgeCalls.get();
+        double seconds = (now - lastBridgeSampleNanos) / 1000000000.0;
+        double callsPerSecond = seconds > 0 ? (calls - lastBridgeCalls) / seconds : 0;
+        lastBridgeCalls = calls;
+        lastBridgeSampleNanos = now;
+
+        JSONObject json = new JSONObject();
+        json.put("bridgeCalls", calls);
+        json.put("bridgeCallsPerSecond", callsPerSecond);
+        json.put("plays", plays);
+        json.put("failedPlays", failedPlays);
+        json.put("stolenVoices", stolenVoices);
+        json.put("loops", loops);
+        json.put("loadTime", loadTime.toJson());
+        json.put("playLatency", playLatency.toJson());
+        json.put("scheduleLateness", scheduleLateness.toJson());
+        json.put("loopBoundaryJitter", loopBoundaryJitter.toJson());
+        json.put("pcmCache", PcmCache.toJson());
+        json.put("streamPool", StreamPool.toJson());
+        return json;
+    }
+
+    static void reset() {
+        loadTime.reset();
+        playLatency.reset();
+        scheduleLateness.reset();
+        loopBoundaryJitter.reset();
+        plays = 0;
+        failedPlays = 0;
+        stolenVoices = 0;
+        loops = 0;
+        PcmCache.reset();
+        StreamPool.reset();
+    }
+}
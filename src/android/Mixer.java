@@ -0,0 +1,283 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Pure java software mixer: resamples, applies gain to and sums every active voice into a stereo 16 bits buffer.
+// Voices are preallocated so triggering a sound does not allocate. When every voice is busy the steal policy
+// decides which one is reused. A voice can loop a region of its sound, the frames before the region are
+// played once (intro).
+public class Mixer {
+
+    // Voice stealing policies
+    public static final int STEAL_OLDEST = 0;
+    public static final int STEAL_QUIETEST = 1;
+    public static final int STEAL_NONE = 2;
+
+    // Output is always stereo
+    public static final int OUTPUT_CHANNELS = 2;
+
+    private final int outputRate;
+    private Voice[] voices;
+    private int stealPolicy;
+    private int activeVoices = 0;
+    private int nextVoiceId = 1;
+    private long nextStartOrder = 0;
+    private float masterGain = 1f;
+
+    // Notified on the mixing thread each time a voice wraps back to the start of its loop region
+    public interface LoopListener {
+        void onLoop(int voiceId);
+    }
+
+    // Mix accumulator, grown when a bigger buffer is requested
+    private float[] accumulator = new float[0];
+
+    // -------------------------------
+    // ------------ Voice ------------
+    // -------------------------------
+
+    private static class Voice {
+        int id = 0; // 0 when the voice is free
+        PcmSound sound;
+        double position; // in source frames
+        double step;     // source frames per output frame
+        float gainLeft;
+        float gainRight;
+        long startOrder;
+        int loopStart;  // in source frames
+        int loopEnd;    // in source frames (excluded), 0 when the voice does not loop
+        LoopListener loopListener;
+    }
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public Mixer(int outputRate, int maxVoices, int stealPolicy) {
+        this.outputRate = outputRate;
+        this.stealPolicy = stealPolicy;
+        this.voices = allocateVoices(maxVoices);
+    }
+
+    private static Voice[] allocateVoices(int count) {
+        Voice[] voices = new Voice[Math.max(1, count)];
+        for (int i = 0; i < voices.length; i++) {
+            voices[i] = new Voice();
+        }
+        return voices;
+    }
+
+    // -------------------------------
+    // -------- Configuration --------
+    // -------------------------------
+
+    public synchronized void setStealPolicy(int stealPolicy) {
+        this.stealPolicy = stealPolicy;
+    }
+
+    // Voices beyond the new maximum are stopped
+    public synchronized void setMaxVoices(int maxVoices) {
+        Voice[] resized = allocateVoices(maxVoices);
+        int count = 0;
+        for (Voice voice : voices) {
+            if (voice.id != 0 && count < resized.length) {
+                resized[count++] = voice;
+            }
+        }
+        voices = resized;
+        activeVoices = count;
+    }
+
+    public synchronized void setMasterGain(float masterGain) {
+        this.masterGain = masterGain;
+    }
+
+    public int getOutputRate() {
+        return outputRate;
+    }
+
+    public synchronized int getActiveVoices() {
+        return activeVoices;
+    }
+
+    // -------------------------------
+    // ----------- Voices ------------
+    // -------------------------------
+
+    // Returns the id of the voice playing the sound, or 0 if no voice is available
+    public synchronized int play(PcmSound sound, float gainLeft, float gainRight) {
+        return play(sound, gainLeft, gainRight, 0, 0, 0, null);
+    }
+
+    // Same as play() but starting at `startFrame` and looping [loopStart, loopEnd[ forever when loopEnd > loopStart
+    public synchronized int play(PcmSound sound, float gainLeft, float gainRight, double startFrame,
+                                 int loopStart, int loopEnd, LoopListener loopListener) {
+        Voice voice = findFreeVoice();
+        if (voice == null) {
+            voice = findVoiceToSteal();
+            if (voice == null) { return 0; }
+        } else {
+            activeVoices++;
+        }
+        voice.id = nextVoiceId++;
+        if (nextVoiceId <= 0) { nextVoiceId = 1; }
+        voice.sound = sound;
+        voice.position = startFrame;
+        voice.step = (double) sound.sampleRate / outputRate;
+        voice.gainLeft = gainLeft;
+        voice.gainRight = gainRight;
+        voice.startOrder = nextStartOrder++;
+        voice.loopStart = loopStart;
+        voice.loopEnd = loopEnd > loopStart ? loopEnd : 0;
+        voice.loopListener = loopListener;
+        notifyAll(); // wakes up an idle output thread
+        return voice.id;
+    }
+
+    public synchronized void stop(int voiceId) {
+        Voice voice = findVoice(voiceId);
+        if (voice != null) {
+            freeVoice(voice);
+        }
+    }
+
+    // Stop every voice playing this sound
+    public synchronized void stopSound(PcmSound sound) {
+        for (Voice voice : voices) {
+            if (voice.id != 0 && voice.sound == sound) {
+                freeVoice(voice);
+            }
+        }
+    }
+
+    public synchronized void setVolume(int voiceId, float gainLeft, float gainRight) {
+        Voice voice = findVoice(voiceId);
+        if (voice != null) {
+            voice.gainLeft = gainLeft;
+            voice.gainRight = gainRight;
+        }
+    }
+
+    public synchronized boolean isPlaying(int voiceId) {
+        return findVoice(voiceId) != null;
+    }
+
+    // Position in source frames, -1 if the voice is not playing anymore
+    public synchronized double getPosition(int voiceId) {
+        Voice voice = findVoice(voiceId);
+        return voice == null ? -1 : voice.position;
+    }
+
+    private Voice findVoice(int voiceId) {
+        if (voiceId == 0) { return null; }
+        for (Voice voice : voices) {
+            if (voice.id == voiceId) { return voice; }
+        }
+        return null;
+    }
+
+    private Voice findFreeVoice() {
+        for (Voice voice : voices) {
+            if (voice.id == 0) { return voice; }
+        }
+        return null;
+    }
+
+    // Looping voices (music) are never stolen
+    private Voice findVoiceToSteal() {
+        Voice candidate = null;
+        for (Voice voice : voices) {
+            if (voice.loopEnd != 0) {
+                continue;
+            }
+            if (stealPolicy == STEAL_OLDEST) {
+                if (candidate == null || voice.startOrder < candidate.startOrder) { candidate = voice; }
+            } else if (stealPolicy == STEAL_QUIETEST) {
+                if (candidate == null || voice.gainLeft + voice.gainRight < candidate.gainLeft + candidate.gainRight) { candidate = voice; }
+            }
+        }
+        return candidate;
+    }
+
+    private void freeVoice(Voice voice) {
+        voice.id = 0;
+        voice.sound = null;
+        voice.loopListener = null;
+        activeVoices--;
+    }
+
+    // -------------------------------
+    // ------------ Mixing -----------
+    // -------------------------------
+
+    // Mix `frames` stereo frames into `output`, returns the number of voices still active
+    public synchronized int mix(short[] output, int frames) {
+        int length = frames * OUTPUT_CHANNELS;
+        if (accumulator.length < length) {
+            accumulator = new float[length];
+        }
+        java.util.Arrays.fill(accumulator, 0, length, 0f);
+
+        for (Voice voice : voices) {
+            if (voice.id != 0) {
+                mixVoice(voice, accumulator, frames);
+            }
+        }
+
+        for (int i = 0; i < length; i++) {
+            output[i] = clip(accumulator[i] * masterGain);
+        }
+        return activeVoices;
+    }
+
+    // Linear interpolation resampling of one voice, the voice is freed when it reaches the end of its sound.
+    // A looping voice wraps at the exact frame, interpolating between the end and the start of its region.
+    private void mixVoice(Voice voice, float[] accumulator, int frames) {
+        PcmSound sound = voice.sound;
+        short[] samples = sound.samples;
+        boolean looping = voice.loopEnd != 0;
+        int end = looping ? voice.loopEnd : sound.frames;
+        double position = voice.position;
+        double step = voice.step;
+
+        for (int frame = 0; frame < frames; frame++) {
+            int index = (int) position;
+            if (index >= end) {
+                if (!looping) {
+                    freeVoice(voice);
+                    return;
+                }
+                while (index >= end) {
+                    position -= end - voice.loopStart;
+                    index = (int) position;
+                }
+                if (voice.loopListener != null) {
+                    voice.loopListener.onLoop(voice.id);
+                }
+            }
+            float fraction = (float) (position - index);
+            int next = index + 1 < end ? index + 1 : (looping ? voice.loopStart : index);
+            float left, right;
+            if (sound.channels == 1) {
+                left = samples[index] + (samples[next] - samples[index]) * fraction;
+                right = left;
+            } else {
+                int a = index * 2, b = next * 2;
+                left = samples[a] + (samples[b] - samples[a]) * fraction;
+                right = samples[a + 1] + (samples[b + 1] - samples[a + 1]) * fraction;
+            }
+            accumulator[frame * 2] += left * voice.gainLeft;
+            accumulator[frame * 2 + 1] += right * voice.gainRight;
+            position += step;
+        }
+        voice.position = position;
+    }
+
+    static short clip(float sample) {
+        if (sample > Short.MAX_VALUE) { return Short.MAX_VALUE; }
+        if (sample < Short.MIN_VALUE) { return Short.MIN_VALUE; }
+        return (short) sample;
+    }
+}
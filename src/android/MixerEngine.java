@@ -0,0 +1,107 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import android.util.Log;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Feeds the output of a Mixer to a streaming AudioBackend.Output from a dedicated audio thread.
+// The thread sleeps while no voice is active.
+public class MixerEngine implements Runnable {
+
+    // Log TAG definition
+    public static final String TAG = MixerEngine.class.getSimpleName();
+
+    // Constant(s)
+    final private static int FRAMES_PER_CHUNK = 256; // ~5ms at 48kHz
+
+    private final Mixer mixer;
+    private final AudioBackend.Output output;
+    private final short[] chunk = new short[FRAMES_PER_CHUNK * Mixer.OUTPUT_CHANNELS];
+    private Thread thread = null;
+    private volatile boolean running = false;
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public MixerEngine(int maxVoices, int stealPolicy) {
+        AudioBackend backend = Yanap.getAudioBackend();
+        int sampleRate = backend.getOutputSampleRate();
+        mixer = new Mixer(sampleRate, maxVoices, stealPolicy);
+        output = backend.createOutput(sampleRate, Mixer.OUTPUT_CHANNELS, FRAMES_PER_CHUNK * 2);
+    }
+
+    public Mixer getMixer() {
+        return mixer;
+    }
+
+    // -------------------------------
+    // ---------- Lifecycle ----------
+    // -------------------------------
+
+    public synchronized void start() {
+        if (running) { return; }
+        running = true;
+        thread = new Thread(this, "YanapMixer");
+        thread.start();
+    }
+
+    public synchronized void release() {
+        running = false;
+        synchronized (mixer) {
+            mixer.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+        output.release();
+    }
+
+    // -------------------------------
+    // --------- Audio thread --------
+    // -------------------------------
+
+    @Override
+    public void run() {
+        Yanap.getAudioBackend().setThreadPriority(AudioBackend.PRIORITY_URGENT_AUDIO);
+        try {
+            while (running) {
+                if (!waitForVoices()) { return; }
+                output.play();
+                int activeVoices;
+                do {
+                    activeVoices = mixer.mix(chunk, FRAMES_PER_CHUNK);
+                    output.write(chunk, 0, chunk.length);
+                } while (running && activeVoices > 0);
+                output.stop(); // buffered audio is still played
+            }
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Output failure, mixer stopped", e);
+        }
+    }
+
+    // Returns false when the engine has been released while waiting
+    private boolean waitForVoices() {
+        synchronized (mixer) {
+            while (running && mixer.getActiveVoices() == 0) {
+                try {
+                    mixer.wait();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+        }
+        return running;
+    }
+}
@@ -0,0 +1,328 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Short sound decoded once to PCM and played through the software mixer (alternative to SoundPlayer)
+public class MixerSoundPlayer extends YanapPlayer {
+
+    // -------------------------------
+    // ----------- Statics -----------
+    // -------------------------------
+
+    // Log TAG definition
+    private static final String TAG = MixerSoundPlayer.class.getSimpleName();
+
+    // Constant(s)
+    final private static int DEFAULT_MAX_VOICES = 32;
+
+    private static MixerEngine engine = null;
+    private static int maxVoices = DEFAULT_MAX_VOICES;
+    private static int stealPolicy = Mixer.STEAL_OLDEST;
+
+    // -------------------------------
+    // ------- Local variables -------
+    // -------------------------------
+
+    private PcmSound sound = null;
+
+    // Mixer voices started by this sound, entries whose mixer voice ended are reused by the next plays
+    private final ArrayList<Voice> voices = new ArrayList<Voice>();
+    private int lastVoiceId = 0;
+
+    private boolean playPending = false;
+    private int pendingVoice = 0;
+    private boolean releasePending = false;
+
+    // -------------------------------
+    // ------------ Voice ------------
+    // -------------------------------
+
+    private static class Voice {
+        int handle = 0; // given by JS, 0 for anonymous plays
+        int id = 0;     // mixer voice id, 0 when the voice is free
+        float volume1;
+        float volume2;
+    }
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public MixerSoundPlayer(Yanap yanap, String uid, float volume) {
+        super(yanap, uid, volume);
+        stateUpdate(Yanap.STATE.LOADING);
+        if (!PcmDecoder.isSupported()) {
+            stateUpdate(Yanap.STATE.ERROR, "mixer requires Android 5.0 or newer");
+            return;
+        }
+        getEngine(); // only one mixer for all MixerSoundPlayers
+    }
+
+    // -------------------------------
+    // ------- Shared mixer engine ---
+    // -------------------------------
+
+    // Also used by the PcmLoopPlayers
+    static synchronized MixerEngine getEngine() {
+        if (engine == null) {
+            engine = new MixerEngine(maxVoices, stealPolicy);
+            engine.start();
+        }
+        return engine;
+    }
+
+    // Stops the mixer thread and releases its output, the next mixer player creates a new engine
+    static synchronized void releaseEngine() {
+        if (engine != null) {
+            engine.release();
+            engine = null;
+        }
+    }
+
+    // Applies to the running mixer, or to the one that will be created
+    public static synchronized void configure(int maxVoices, int stealPolicy) {
+        MixerSoundPlayer.maxVoices = maxVoices;
+        MixerSoundPlayer.stealPolicy = stealPolicy;
+        if (engine != null) {
+            engine.getMixer().setMaxVoices(maxVoices);
+            engine.getMixer().setStealPolicy(stealPolicy);
+        }
+    }
+
+    // -------------------------------
+    // ----------- Loading -----------
+    // -------------------------------
+
+    @Override
+    public void load(AudioBackend.Source source) {
+        final PcmSound decoded;
+        try {
+            decoded = PcmCache.decode(source, cacheKey);
+        } catch (IOException e) {
+            postStateUpdate(Yanap.STATE.ERROR, "unable to load file (" + e.getMessage() + ")");
+            return;
+        }
+        audioThread.enqueue(new Runnable() {
+            @Override
+            public void run() {
+                onDecoded(decoded);
+            }
+        });
+    }
+
+    @Override
+    public boolean loadsPcm() {
+        return true;
+    }
+
+    @Override
+    PcmSound getPcmSound() {
+        return sound;
+    }
+
+    @Override
+    void onDecoded(PcmSound decoded) {
+        if (state == Yanap.STATE.ERROR || state == Yanap.STATE.RELEASED) { return; }
+        sound = decoded;
+        stateUpdate(Yanap.STATE.LOADED);
+
+        if (playPending && !releasePending) {
+            playVoice(pendingVoice);
+        }
+        if (releasePending) {
+            release();
+        }
+    }
+
+    // -------------------------------
+    // ------- Interface: PLAY -------
+    // -------------------------------
+
+    @Override
+    public void play() {
+        playVoice(0);
+    }
+
+    @Override
+    public void playVoice(int handle) {
+        if (state == Yanap.STATE.LOADING) {
+            playPending = true;
+            pendingVoice = handle;
+        } else if (state == Yanap.STATE.LOADED) {
+            playPending = false;
+            Mixer mixer = getEngine().getMixer();
+            Voice voice = selectVoice(mixer, handle);
+            int voiceId = mixer.play(sound, volume1 * outputGain(), volume2 * outputGain());
+            if (voiceId == 0) {
+                playFailed(); // every voice is taken and the steal policy keeps them, the sound stays LOADED
+                return;
+            }
+            if (voice.id != 0) { // the handle is played again from the start, stopped only once the new voice plays
+                mixer.stop(voice.id);
+            }
+            voice.handle = handle;
+            voice.id = voiceId;
+            voice.volume1 = volume1;
+            voice.volume2 = volume2;
+            lastVoiceId = voiceId;
+        }
+    }
+
+    // Voice already using this handle, voice whose mixer voice ended (stolen or at the end of the sound), or a new one
+    private Voice selectVoice(Mixer mixer, int handle) {
+        Voice free = null;
+        for (Voice voice : voices) {
+            if (voice.id != 0 && !mixer.isPlaying(voice.id)) {
+                voice.id = 0;
+            }
+            if (handle != 0 && voice.id != 0 && voice.handle == handle) {
+                return voice;
+            }
+            if (free == null && voice.id == 0) {
+                free = voice;
+            }
+        }
+        if (free == null) {
+            free = new Voice();
+            voices.add(free);
+        }
+        return free;
+    }
+
+    private Voice findVoice(int handle) {
+        for (Voice voice : voices) {
+            if (voice.id != 0 && voice.handle == handle) { return voice; }
+        }
+        return null;
+    }
+
+    @Override
+    public int getActiveVoices() {
+        if (sound == null) { return 0; }
+        Mixer mixer = getEngine().getMixer();
+        int count = 0;
+        for (Voice voice : voices) {
+            if (voice.id != 0 && mixer.isPlaying(voice.id)) { count++; }
+        }
+        return count;
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return sound == null ? 0 : sound.byteSize();
+    }
+
+    // Position of the last voice played, -1 once it ended
+    @Override
+    public int getPositionMs() {
+        if (sound == null || lastVoiceId == 0) { return -1; }
+        double position = getEngine().getMixer().getPosition(lastVoiceId);
+        return position < 0 ? -1 : (int) (position * 1000 / sound.sampleRate);
+    }
+
+    @Override
+    public int getDurationMs() {
+        return sound == null ? -1 : (int) ((long) sound.frames * 1000 / sound.sampleRate);
+    }
+
+    // -------------------------------
+    // ------- Interface: STOP -------
+    // -------------------------------
+
+    // Stop every voice
+    @Override
+    public void stop() {
+        playPending = false;
+        if (sound != null) {
+            getEngine().getMixer().stopSound(sound);
+        }
+        for (Voice voice : voices) {
+            voice.id = 0;
+        }
+    }
+
+    @Override
+    public void stopVoice(int handle) {
+        if (playPending && pendingVoice == handle) {
+            playPending = false;
+        }
+        Voice voice = findVoice(handle);
+        if (voice == null) return;
+        getEngine().getMixer().stop(voice.id);
+        voice.id = 0;
+    }
+
+    // -------------------------------
+    // ---- Interface: SET VOLUME ----
+    // -------------------------------
+
+    // Applies to every voice and to the next plays
+    @Override
+    public void setVolume(float volume1, float volume2) {
+        super.setVolume(volume1, volume2);
+        for (Voice voice : voices) {
+            if (voice.id != 0) {
+                voice.volume1 = volume1;
+                voice.volume2 = volume2;
+            }
+        }
+        onOutputGainChanged();
+    }
+
+    // Voices keep their own volume
+    @Override
+    void onOutputGainChanged() {
+        if (sound == null) return;
+        Mixer mixer = getEngine().getMixer();
+        float gain = outputGain();
+        for (Voice voice : voices) {
+            if (voice.id != 0) {
+                mixer.setVolume(voice.id, voice.volume1 * gain, voice.volume2 * gain);
+            }
+        }
+    }
+
+    @Override
+    public void setVoiceVolume(int handle, float volume1, float volume2) {
+        Voice voice = findVoice(handle);
+        if (voice == null) return;
+        voice.volume1 = volume1;
+        voice.volume2 = volume2;
+        getEngine().getMixer().setVolume(voice.id, volume1 * outputGain(), volume2 * outputGain());
+    }
+
+    // -------------------------------
+    // ------ Interface: RELEASE -----
+    // -------------------------------
+
+    @Override
+    public void release() {
+        if (state == Yanap.STATE.RELEASED) return;
+
+        if (state == Yanap.STATE.LOADING) {
+            releasePending = true;
+            return;
+        }
+
+        playPending = false;
+        releasePending = false;
+
+        stop();
+        sound = null;
+        voices.clear();
+        lastVoiceId = 0;
+
+        stateUpdate(Yanap.STATE.RELEASED);
+        yanap = null;
+        uid = null;
+    }
+}
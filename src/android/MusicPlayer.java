@@ -4,10 +4,6 @@ package cordovaPluginYanap;
 // ----------- Imports -----------
 // -------------------------------
 
-import android.content.res.AssetFileDescriptor;
-import android.media.AudioManager;
-import android.media.MediaPlayer;
-
 import java.io.IOException;
 
 // -------------------------------
@@ -19,7 +15,7 @@ public class MusicPlayer extends YanapPlayer {
     // Log TAG definition
     public static final String TAG = MusicPlayer.class.getSimpleName();
 
-    private MediaPlayer mediaPlayer = null;
+    private AudioBackend.Stream mediaPlayer = null;
 
     private boolean playPending = false;
     private boolean releasePending = false;
@@ -28,16 +24,15 @@ public class MusicPlayer extends YanapPlayer {
     // --------- Constructor ---------
     // -------------------------------
 
-    public MusicPlayer(Yanap yanap, AssetFileDescriptor afd, String uid, float volume) {
+    public MusicPlayer(Yanap yanap, String uid, float volume) {
         super(yanap, uid, volume);
         stateUpdate(Yanap.STATE.LOADING);
 
-        mediaPlayer = new MediaPlayer();
-        mediaPlayer.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+        mediaPlayer = StreamPool.acquire();
+        mediaPlayer.setListener(new AudioBackend.Stream.Listener() {
             @Override
-            public void onPrepared(MediaPlayer mediaPlayer) {
+            public void onPrepared(AudioBackend.Stream stream) {
                 if (state == Yanap.STATE.ERROR) { return; }
-                mediaPlayer.setOnCompletionListener(onCompletionListener);
                 stateUpdate(Yanap.STATE.LOADED);
                 if (playPending && !releasePending) {
                     play();
@@ -46,27 +41,34 @@ public class MusicPlayer extends YanapPlayer {
                     release();
                 }
             }
+
+            // current track ended
+            @Override
+            public void onCompletion(AudioBackend.Stream stream) {
+                stateUpdate(Yanap.STATE.STOPPED);
+            }
         });
-        try {
-            mediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-            mediaPlayer.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
-            mediaPlayer.setVolume(volume1, volume2);
-            mediaPlayer.prepare();
-        } catch (IOException e) {
-            stateUpdate(Yanap.STATE.ERROR, "unable to load file");
-        }
     }
 
     // -------------------------------
-    // ----- Current track ended -----
+    // ----------- Loading -----------
     // -------------------------------
 
-    private MediaPlayer.OnCompletionListener onCompletionListener = new MediaPlayer.OnCompletionListener() {
-        @Override
-        public void onCompletion(MediaPlayer mediaPlayer) {
-            stateUpdate(Yanap.STATE.STOPPED);
+    @Override
+    public boolean readsWhilePlaying() {
+        return true;
+    }
+
+    @Override
+    public void load(AudioBackend.Source source) {
+        try {
+            mediaPlayer.setDataSource(source);
+            mediaPlayer.setVolume(volume1 * outputGain(), volume2 * outputGain());
+            mediaPlayer.prepare();
+        } catch (IOException e) {
+            postStateUpdate(Yanap.STATE.ERROR, "unable to load file");
         }
-    };
+    }
 
     // -------------------------------
     // ------- Interface: PLAY -------
@@ -83,6 +85,20 @@ public class MusicPlayer extends YanapPlayer {
         }
     }
 
+    @Override
+    public int getPositionMs() {
+        return isPrepared() ? mediaPlayer.getCurrentPosition() : -1;
+    }
+
+    @Override
+    public int getDurationMs() {
+        return isPrepared() ? mediaPlayer.getDuration() : -1;
+    }
+
+    private boolean isPrepared() {
+        return state == Yanap.STATE.LOADED || state == Yanap.STATE.PLAYING || state == Yanap.STATE.STOPPED;
+    }
+
     // -------------------------------
     // ------- Interface: STOP -------
     // -------------------------------
@@ -90,6 +106,7 @@ public class MusicPlayer extends YanapPlayer {
     @Override
     public void stop() {
         playPending = false;
+        if (state == Yanap.STATE.LOADING) return;
         if (mediaPlayer.isPlaying()) {
             mediaPlayer.pause();
             stateUpdate(Yanap.STATE.STOPPED);
@@ -104,7 +121,7 @@ public class MusicPlayer extends YanapPlayer {
     public void setVolume(float volume1, float volume2) {
         super.setVolume(volume1, volume2);
         if (mediaPlayer != null) {
-            mediaPlayer.setVolume(volume1, volume2);
+            mediaPlayer.setVolume(volume1 * outputGain(), volume2 * outputGain());
         }
     }
 
@@ -125,9 +142,7 @@ public class MusicPlayer extends YanapPlayer {
         releasePending = false;
 
         if (mediaPlayer != null) {
-            if (mediaPlayer.isPlaying()) mediaPlayer.stop();
-            mediaPlayer.reset();
-            mediaPlayer.release();
+            StreamPool.recycle(mediaPlayer);
             mediaPlayer = null;
         }
 
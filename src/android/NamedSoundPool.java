@@ -0,0 +1,290 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// SoundPool shared by the SoundPlayers that picked its name at load time.
+// Sounds in different pools never compete for the same streams. Within a pool, players loading the same
+// file path share a single sample, reference counted by its players.
+public class NamedSoundPool {
+
+    // -------------------------------
+    // ----------- Statics -----------
+    // -------------------------------
+
+    // Log TAG definition
+    public static final String TAG = NamedSoundPool.class.getSimpleName();
+
+    // Constant(s)
+    final public static String DEFAULT_POOL = "default";
+    final public static int DEFAULT_MAX_STREAMS = 20;
+    final public static int DEFAULT_USAGE = AudioBackend.USAGE_GAME;
+    final public static int DEFAULT_CONTENT_TYPE = AudioBackend.CONTENT_TYPE_SONIFICATION;
+    final private static long COMPRESSION_RATIO_ESTIMATE = 10; // used when the decoded size cannot be read from the file
+    final private static long UNKNOWN_DURATION_MS = 5000;
+
+    private static final HashMap<String, NamedSoundPool> pools = new HashMap<String, NamedSoundPool>();
+
+    // -------------------------------
+    // ------- Local variables -------
+    // -------------------------------
+
+    public final String name;
+    public final AudioBackend.Samples soundPool;
+    private final HashMap<String, SharedSound> sounds = new HashMap<String, SharedSound>();
+    private final IntObjectMap<SharedSound> soundsById = new IntObjectMap<SharedSound>();
+    private long cacheHits = 0;
+    private long cacheMisses = 0;
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    private NamedSoundPool(String name, int maxStreams, int usage, int contentType) {
+        this.name = name;
+        soundPool = Yanap.getAudioBackend().createSamples(maxStreams, usage, contentType);
+        soundPool.setListener(new AudioBackend.Samples.Listener() {
+            @Override
+            public void onLoadComplete(int soundId, int status) {
+                NamedSoundPool.this.onLoadComplete(soundId, status);
+            }
+        });
+    }
+
+    // -------------------------------
+    // ---------- Registry -----------
+    // -------------------------------
+
+    // Returns null for an unknown pool, the default pool is created on first use
+    public static synchronized NamedSoundPool get(String name) {
+        NamedSoundPool pool = pools.get(name);
+        if (pool == null && name.equals(DEFAULT_POOL)) {
+            pool = new NamedSoundPool(DEFAULT_POOL, DEFAULT_MAX_STREAMS, DEFAULT_USAGE, DEFAULT_CONTENT_TYPE);
+            pools.put(DEFAULT_POOL, pool);
+        }
+        return pool;
+    }
+
+    // Create or recreate a pool, returns false if the pool already has sounds loaded
+    public static synchronized boolean configure(String name, int maxStreams, int usage, int contentType) {
+        NamedSoundPool previous = pools.get(name);
+        if (previous != null) {
+            if (!previous.isEmpty()) { return false; }
+            previous.soundPool.release();
+        }
+        pools.put(name, new NamedSoundPool(name, maxStreams, usage, contentType));
+        return true;
+    }
+
+    // -------------------------------
+    // ------------ Sounds -----------
+    // -------------------------------
+
+    // Sample loaded once per pool and shared by every SoundPlayer using the same file path
+    static class SharedSound {
+        final NamedSoundPool pool;
+        final String filePath;
+        final SoundPlayer opener; // the player whose file is loaded, the others reuse its sample
+        final ArrayList<SoundPlayer> players = new ArrayList<SoundPlayer>();
+        int soundId = -1;
+        boolean loaded = false;
+        boolean evicted = false; // unloaded to stay within the memory budget, reloaded on next play
+        long fileLength = -1;
+        long byteSize = 0;   // approximate size once decoded
+        long durationMs = 0; // 0 when unknown
+        volatile long lastPlayed = -1; // AudioClock time, -1 until played
+
+        SharedSound(NamedSoundPool pool, String filePath, SoundPlayer opener) {
+            this.pool = pool;
+            this.filePath = filePath;
+            this.opener = opener;
+            players.add(opener);
+        }
+
+        boolean isPlaying(long now) {
+            return lastPlayed >= 0 && now - lastPlayed < (durationMs > 0 ? durationMs : UNKNOWN_DURATION_MS);
+        }
+    }
+
+    // Returns true if another player already loads (or loaded) this file, in which case the player
+    // is notified with onLoadComplete without opening the file. Otherwise the player has to call load().
+    // Also called by players of an evicted sample to get it reloaded.
+    public boolean share(SoundPlayer soundPlayer, String filePath) {
+        SharedSound sound;
+        synchronized (sounds) {
+            sound = sounds.get(filePath);
+            if (sound == null) {
+                sounds.put(filePath, new SharedSound(this, filePath, soundPlayer));
+                cacheMisses++;
+                return false;
+            }
+            if (!sound.players.contains(soundPlayer)) {
+                sound.players.add(soundPlayer);
+                cacheHits++;
+            }
+            if (sound.evicted) {
+                sound.evicted = false;
+                return false;
+            }
+            if (!sound.loaded) { return true; }
+        }
+        soundPlayer.onLoadComplete(0, sound.soundId, sound.fileLength);
+        return true;
+    }
+
+    // Load the file of the first player that asked for it. With a PcmCache entry, the decoded copy is loaded
+    // instead. On a cache miss the file is decoded once into the cache and SoundPool loads that copy,
+    // rather than decoding the compressed file a second time.
+    public void load(String filePath, AudioBackend.Source source, int priority, String cacheKey) {
+        long[] estimate = estimateDecodedSize(source);
+        AudioBackend.Source cached = openCached(PcmCache.get(cacheKey));
+        if (cached == null && cacheKey != null) {
+            cached = openCached(PcmCache.store(source, cacheKey));
+        }
+        // the listener may fire on another thread before the mapping is stored
+        synchronized (sounds) {
+            SharedSound sound = sounds.get(filePath);
+            if (sound != null) { // else every player released while the file was being opened
+                sound.fileLength = source.getLength();
+                sound.byteSize = estimate[0];
+                sound.durationMs = estimate[1];
+                sound.soundId = soundPool.load(cached != null ? cached : source, priority);
+                soundsById.put(sound.soundId, sound);
+            }
+        }
+        if (cached != null) {
+            close(cached); // SoundPool keeps its own descriptor
+        }
+    }
+
+    private static AudioBackend.Source openCached(File file) {
+        if (file == null) { return null; }
+        try {
+            return Yanap.getAudioBackend().openFile(file);
+        } catch (IOException e) {
+            return null; // evicted meanwhile
+        }
+    }
+
+    private static void close(AudioBackend.Source source) {
+        try {
+            source.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to close file descriptor", e);
+        }
+    }
+
+    // The file could not be opened, every player waiting for it fails
+    public void loadFailed(String filePath, String message) {
+        SharedSound sound;
+        synchronized (sounds) {
+            sound = sounds.remove(filePath);
+        }
+        if (sound == null) { return; }
+        for (SoundPlayer soundPlayer : new ArrayList<SoundPlayer>(sound.players)) {
+            soundPlayer.stateUpdate(Yanap.STATE.ERROR, message);
+        }
+    }
+
+    private void onLoadComplete(int soundId, int status) {
+        SharedSound sound;
+        ArrayList<SoundPlayer> players;
+        synchronized (sounds) {
+            sound = soundsById.get(soundId);
+            if (sound == null) { return; }
+            sound.loaded = status == 0;
+            players = new ArrayList<SoundPlayer>(sound.players);
+        }
+        if (sound.loaded) {
+            SoundMemoryBudget.loaded(sound);
+        }
+        for (SoundPlayer soundPlayer : players) {
+            soundPlayer.onLoadComplete(status, soundId, soundPlayer == sound.opener ? -1 : sound.fileLength);
+        }
+    }
+
+    // Returns false if the sample is not loaded anymore (evicted), the player then has to reload it
+    public boolean touch(String filePath) {
+        SharedSound sound;
+        synchronized (sounds) {
+            sound = sounds.get(filePath);
+            if (sound == null || !sound.loaded) { return false; }
+            sound.lastPlayed = AudioClock.nowMillis();
+        }
+        SoundMemoryBudget.touched(sound);
+        return true;
+    }
+
+    // Called by the SoundMemoryBudget
+    void evict(SharedSound sound) {
+        synchronized (sounds) {
+            if (!sound.loaded) { return; }
+            soundsById.remove(sound.soundId);
+            soundPool.unload(sound.soundId);
+            sound.soundId = -1;
+            sound.loaded = false;
+            sound.evicted = true;
+        }
+    }
+
+    // The sample is unloaded when its last player is released
+    public void release(SoundPlayer soundPlayer, String filePath) {
+        SharedSound sound;
+        synchronized (sounds) {
+            sound = sounds.get(filePath);
+            if (sound == null || !sound.players.remove(soundPlayer) || !sound.players.isEmpty()) { return; }
+            sounds.remove(filePath);
+            if (sound.soundId != -1) {
+                soundsById.remove(sound.soundId);
+                soundPool.unload(sound.soundId);
+            }
+        }
+        SoundMemoryBudget.unloaded(sound);
+    }
+
+    // [decoded bytes, duration in ms], SoundPool keeps samples as 16 bits PCM
+    private static long[] estimateDecodedSize(AudioBackend.Source source) {
+        long[] estimate = { source.getLength() * COMPRESSION_RATIO_ESTIMATE, 0 };
+        AudioBackend.Format format = Yanap.getAudioBackend().probe(source);
+        if (format != null && format.durationUs >= 0) { // else keep the estimate based on the file size
+            estimate[0] = format.durationUs * format.sampleRate * format.channels * 2 / 1000000L;
+            estimate[1] = format.durationUs / 1000;
+        }
+        return estimate;
+    }
+
+    private boolean isEmpty() {
+        synchronized (sounds) {
+            return sounds.isEmpty();
+        }
+    }
+
+    // -------------------------------
+    // ---------- Statistics ---------
+    // -------------------------------
+
+    // [hits, misses, shared samples] summed over every pool
+    public static synchronized long[] getCacheStats() {
+        long[] stats = new long[3];
+        for (NamedSoundPool pool : pools.values()) {
+            synchronized (pool.sounds) {
+                stats[0] += pool.cacheHits;
+                stats[1] += pool.cacheMisses;
+                stats[2] += pool.sounds.size();
+            }
+        }
+        return stats;
+    }
+}
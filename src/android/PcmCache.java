@@ -0,0 +1,319 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Opt-in disk cache of decoded sounds, kept as 16 bits PCM WAV files in the application cache directory so that
+// the next launches skip the decoding: PCM players copy them to memory, SoundPool loads them instead of the compressed
+// file. Entries are keyed by path, length and modification time (application update time for packaged files),
+// a changed file gets a new entry and the old one is evicted once the cache is over its size, least recently used first.
+// Used from the loader threads.
+public class PcmCache {
+
+    // Log TAG definition
+    public static final String TAG = PcmCache.class.getSimpleName();
+
+    // Constant(s)
+    final public static long DEFAULT_MAX_BYTES = 64 * 1024 * 1024;
+    final private static String DIRECTORY = "yanap-pcm";
+    final private static String EXTENSION = ".wav";
+    final private static int HEADER_BYTES = 44;
+    final private static int WRITE_CHUNK_SAMPLES = 32 * 1024;
+
+    private static File directory = null; // null while disabled
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+
+    // Statistics, reset with the other metrics
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long evictions = 0;
+    private static final Histogram decodeTime = new Histogram();    // compressed file decoded
+    private static final Histogram cachedLoadTime = new Histogram(); // cached file mapped instead
+
+    // -------------------------------
+    // -------- Configuration --------
+    // -------------------------------
+
+    public static synchronized void configure(File cacheDir, boolean enabled, long maxBytes) {
+        PcmCache.maxBytes = Math.max(0, maxBytes);
+        if (!enabled) {
+            directory = null;
+            return;
+        }
+        directory = new File(cacheDir, DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Unable to create " + directory.getAbsolutePath() + ", cache disabled");
+            directory = null;
+            return;
+        }
+        evictIfNeeded();
+    }
+
+    public static synchronized boolean isEnabled() {
+        return directory != null;
+    }
+
+    // Deletes every entry, the cache stays enabled
+    public static synchronized void clear(File cacheDir) {
+        for (File file : listEntries(new File(cacheDir, DIRECTORY))) {
+            if (file.delete()) { evictions++; }
+        }
+    }
+
+    // Null when the cache is disabled. `stamp` changes with the content: modification time, application update time...
+    public static String key(String filePath, long length, long stamp) {
+        if (!isEnabled()) { return null; }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest((filePath + "|" + length + "|" + stamp).getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        } catch (java.io.UnsupportedEncodingException e) {
+            return null;
+        }
+    }
+
+    // -------------------------------
+    // ----------- Lookup ------------
+    // -------------------------------
+
+    // Returns the cached file, or null if the entry does not exist (or the cache is disabled)
+    public static synchronized File get(String key) {
+        if (key == null || directory == null) { return null; }
+        File file = new File(directory, key + EXTENSION);
+        if (!file.isFile()) {
+            misses++;
+            return null;
+        }
+        hits++;
+        file.setLastModified(System.currentTimeMillis()); // most recently used
+        return file;
+    }
+
+    // Cached sound if there is one, otherwise decodes the file and stores it for the next time
+    public static PcmSound decode(AudioBackend.Source source, String key) throws IOException {
+        File cached = get(key);
+        if (cached != null) {
+            long startNanos = AudioClock.nowNanos();
+            try {
+                PcmSound sound = read(cached);
+                recordLoad(cachedLoadTime, startNanos);
+                return sound;
+            } catch (IOException e) {
+                Log.w(TAG, "Invalid cache entry " + cached.getName() + ", decoding again", e);
+                cached.delete();
+            }
+        }
+        long startNanos = AudioClock.nowNanos();
+        PcmSound sound = PcmDecoder.decode(source);
+        recordLoad(decodeTime, startNanos);
+        if (key != null) {
+            write(key, sound);
+        }
+        return sound;
+    }
+
+    // For players that cannot use decoded sounds directly (SoundPool): decodes the file into the cache,
+    // unless it is already there. Returns the cached file, null if it could not be stored.
+    public static File store(AudioBackend.Source source, String key) {
+        if (key == null || !PcmDecoder.isSupported()) { return null; }
+        synchronized (PcmCache.class) {
+            if (directory == null) { return null; }
+            File existing = new File(directory, key + EXTENSION);
+            if (existing.isFile()) { return existing; }
+        }
+        try {
+            long startNanos = AudioClock.nowNanos();
+            PcmSound sound = PcmDecoder.decode(source);
+            recordLoad(decodeTime, startNanos);
+            return write(key, sound);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to decode " + key + " for the cache", e);
+            return null;
+        }
+    }
+
+    private static synchronized void recordLoad(Histogram histogram, long startNanos) {
+        histogram.record(Metrics.elapsedMs(startNanos));
+    }
+
+    // -------------------------------
+    // ------------ Files ------------
+    // -------------------------------
+
+    // Maps the file instead of reading it through a stream, the samples are then copied once into the heap
+    private static PcmSound read(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() < HEADER_BYTES || buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) { // RIFF, WAVE
+                throw new IOException("not a wav file");
+            }
+            int channels = buffer.getShort(22);
+            int sampleRate = buffer.getInt(24);
+            int dataBytes = buffer.getInt(40);
+            if (dataBytes < 0 || dataBytes > channel.size() - HEADER_BYTES) {
+                throw new IOException("truncated file");
+            }
+            short[] samples = new short[dataBytes / 2];
+            buffer.position(HEADER_BYTES);
+            buffer.asShortBuffer().get(samples);
+            return new PcmSound(samples, channels, sampleRate);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        } finally {
+            input.close();
+        }
+    }
+
+    // Written to a temporary file then renamed, so that a partial file is never read.
+    // Returns the file, null if it could not be written or was evicted right away.
+    private static File write(String key, PcmSound sound) {
+        File target;
+        synchronized (PcmCache.class) {
+            if (directory == null) { return null; }
+            target = new File(directory, key + EXTENSION);
+        }
+        File temporary = new File(target.getParentFile(), key + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            FileOutputStream output = new FileOutputStream(temporary);
+            try {
+                FileChannel channel = output.getChannel();
+                channel.write(header(sound));
+                ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK_SAMPLES * 2).order(ByteOrder.LITTLE_ENDIAN);
+                for (int offset = 0; offset < sound.samples.length; offset += WRITE_CHUNK_SAMPLES) {
+                    int count = Math.min(WRITE_CHUNK_SAMPLES, sound.samples.length - offset);
+                    chunk.clear();
+                    chunk.asShortBuffer().put(sound.samples, offset, count);
+                    chunk.limit(count * 2);
+                    while (chunk.hasRemaining()) {
+                        channel.write(chunk);
+                    }
+                }
+            } finally {
+                output.close();
+            }
+            if (!temporary.renameTo(target)) {
+                throw new IOException("unable to rename " + temporary.getName());
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write cache entry " + key, e);
+            temporary.delete();
+            return null;
+        }
+        synchronized (PcmCache.class) {
+            evictIfNeeded();
+        }
+        return target.isFile() ? target : null;
+    }
+
+    private static ByteBuffer header(PcmSound sound) {
+        int dataBytes = sound.samples.length * 2;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952).putInt(36 + dataBytes).putInt(0x45564157); // RIFF, size, WAVE
+        header.putInt(0x20746d66).putInt(16).putShort((short) 1).putShort((short) sound.channels); // fmt, PCM
+        header.putInt(sound.sampleRate).putInt(sound.sampleRate * sound.channels * 2);
+        header.putShort((short) (sound.channels * 2)).putShort((short) 16);
+        header.putInt(0x61746164).putInt(dataBytes); // data
+        header.flip();
+        return header;
+    }
+
+    // -------------------------------
+    // ---------- Eviction -----------
+    // -------------------------------
+
+    private static File[] listEntries(File directory) {
+        File[] files = directory == null ? null : directory.listFiles();
+        if (files == null) { return new File[0]; }
+        int count = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(EXTENSION)) { files[count++] = file; }
+        }
+        return Arrays.copyOf(files, count);
+    }
+
+    // Least recently used entries are deleted first
+    private static void evictIfNeeded() {
+        File[] entries = listEntries(directory);
+        long usedBytes = 0;
+        for (File entry : entries) {
+            usedBytes += entry.length();
+        }
+        if (usedBytes <= maxBytes) { return; }
+        Arrays.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long difference = a.lastModified() - b.lastModified();
+                return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < entries.length && usedBytes > maxBytes; i++) {
+            long length = entries[i].length();
+            if (entries[i].delete()) {
+                usedBytes -= length;
+                evictions++;
+            }
+        }
+    }
+
+    // -------------------------------
+    // ---------- Statistics ---------
+    // -------------------------------
+
+    static synchronized JSONObject toJson() throws JSONException {
+        long bytes = 0;
+        File[] entries = listEntries(directory);
+        for (File entry : entries) {
+            bytes += entry.length();
+        }
+        JSONObject json = new JSONObject();
+        json.put("enabled", directory != null);
+        json.put("entries", entries.length);
+        json.put("bytes", bytes);
+        json.put("maxBytes", maxBytes);
+        json.put("hits", hits);
+        json.put("misses", misses);
+        json.put("evictions", evictions);
+        json.put("decodeTime", decodeTime.toJson());
+        json.put("cachedLoadTime", cachedLoadTime.toJson());
+        return json;
+    }
+
+    static synchronized void reset() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+        decodeTime.reset();
+        cachedLoadTime.reset();
+    }
+}
@@ -0,0 +1,81 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Decodes a whole compressed file into 16 bits PCM, with the decoder of the AudioBackend (Android 5.0 or newer)
+public class PcmDecoder {
+
+    // Log TAG definition
+    public static final String TAG = PcmDecoder.class.getSimpleName();
+
+    public static boolean isSupported() {
+        return Yanap.getAudioBackend().supportsDecoding();
+    }
+
+    public static PcmSound decode(AudioBackend.Source source) throws IOException {
+        AudioBackend.Decoder decoder = Yanap.getAudioBackend().createDecoder(source);
+        try {
+            ShortArray output = new ShortArray(estimateSamples(decoder));
+            ShortBuffer samples;
+            while ((samples = decoder.read()) != null) {
+                output.append(samples);
+            }
+
+            int channels = decoder.getChannels();
+            if (channels > 2) {
+                throw new IOException("unsupported channel count " + channels);
+            }
+            return new PcmSound(output.toArray(), channels, decoder.getSampleRate());
+        } finally {
+            decoder.release();
+        }
+    }
+
+    private static int estimateSamples(AudioBackend.Decoder decoder) {
+        int sampleRate = decoder.getSampleRate();
+        int channels = decoder.getChannels();
+        if (decoder.getDurationUs() < 0) { return sampleRate * channels; }
+        long samples = decoder.getDurationUs() * sampleRate * channels / 1000000L;
+        return (int) Math.min(Math.max(samples, 1024), Integer.MAX_VALUE / 2);
+    }
+
+    // -------------------------------
+    // ---- Growable short buffer ----
+    // -------------------------------
+
+    private static class ShortArray {
+        private short[] data;
+        private int size = 0;
+
+        ShortArray(int capacity) {
+            data = new short[capacity];
+        }
+
+        void append(ShortBuffer buffer) {
+            int count = buffer.remaining();
+            if (size + count > data.length) {
+                short[] grown = new short[Math.max(data.length * 2, size + count)];
+                System.arraycopy(data, 0, grown, 0, size);
+                data = grown;
+            }
+            buffer.get(data, size, count);
+            size += count;
+        }
+
+        short[] toArray() {
+            if (size == data.length) { return data; }
+            short[] result = new short[size];
+            System.arraycopy(data, 0, result, 0, size);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import java.io.IOException;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Loop decoded once to PCM and played through the software mixer, so that a region of the file can be looped
+// with a sample accurate wrap. The frames before the region are an intro played once.
+// Used instead of LoopPlayer when a loop region is given at load time.
+public class PcmLoopPlayer extends YanapPlayer implements Mixer.LoopListener {
+
+    // -------------------------------
+    // ----------- Statics -----------
+    // -------------------------------
+
+    // Log TAG definition
+    private static final String TAG = PcmLoopPlayer.class.getSimpleName();
+
+    // Constant(s)
+    final public static long UNSET = -1;
+
+    // -------------------------------
+    // ------- Local variables -------
+    // -------------------------------
+
+    // Region as given by JS, either in samples (frames) or in milliseconds
+    private final long loopStartSample;
+    private final long loopEndSample;
+    private final long loopStartMs;
+    private final long loopEndMs;
+    private final boolean playIntro;
+
+    private PcmSound sound = null;
+    private int loopStart = 0; // in frames
+    private int loopEnd = 0;   // in frames (excluded)
+    private int voiceId = 0;
+    private double resumePosition = UNSET; // in frames, set when stopped
+
+    private boolean playPending = false;
+    private boolean releasePending = false;
+
+    // Loop notifications come from the mixer thread
+    private final Runnable loopRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (state == Yanap.STATE.PLAYING || state == Yanap.STATE.LOOPING) {
+                Metrics.loops++;
+                stateUpdate(Yanap.STATE.LOOPING);
+            }
+        }
+    };
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public PcmLoopPlayer(Yanap yanap, String uid, float volume, long loopStartSample, long loopEndSample,
+                         long loopStartMs, long loopEndMs, boolean playIntro) {
+        super(yanap, uid, volume);
+        stateUpdate(Yanap.STATE.LOADING);
+        this.loopStartSample = loopStartSample;
+        this.loopEndSample = loopEndSample;
+        this.loopStartMs = loopStartMs;
+        this.loopEndMs = loopEndMs;
+        this.playIntro = playIntro;
+        if (!PcmDecoder.isSupported()) {
+            stateUpdate(Yanap.STATE.ERROR, "loop regions require Android 5.0 or newer");
+            return;
+        }
+        MixerSoundPlayer.getEngine();
+    }
+
+    // -------------------------------
+    // ----------- Loading -----------
+    // -------------------------------
+
+    @Override
+    public void load(AudioBackend.Source source) {
+        final PcmSound decoded;
+        try {
+            decoded = PcmCache.decode(source, cacheKey);
+        } catch (IOException e) {
+            postStateUpdate(Yanap.STATE.ERROR, "unable to load file (" + e.getMessage() + ")");
+            return;
+        }
+        audioThread.enqueue(new Runnable() {
+            @Override
+            public void run() {
+                onDecoded(decoded);
+            }
+        });
+    }
+
+    @Override
+    public boolean loadsPcm() {
+        return true;
+    }
+
+    @Override
+    PcmSound getPcmSound() {
+        return sound;
+    }
+
+    @Override
+    void onDecoded(PcmSound decoded) {
+        if (state == Yanap.STATE.ERROR || state == Yanap.STATE.RELEASED) { return; }
+
+        long start = toFrames(loopStartSample, loopStartMs, decoded.sampleRate, 0);
+        long end = toFrames(loopEndSample, loopEndMs, decoded.sampleRate, decoded.frames);
+        if (start < 0 || end > decoded.frames || start >= end) {
+            stateUpdate(Yanap.STATE.ERROR, "invalid loop region [" + start + ", " + end + "[ for " + decoded.frames + " samples");
+            return;
+        }
+        sound = decoded;
+        loopStart = (int) start;
+        loopEnd = (int) end;
+        stateUpdate(Yanap.STATE.LOADED);
+
+        if (playPending && !releasePending) {
+            play();
+        }
+        if (releasePending) {
+            release();
+        }
+    }
+
+    // Samples take precedence over milliseconds
+    private static long toFrames(long samples, long ms, int sampleRate, long defaultFrames) {
+        if (samples != UNSET) { return samples; }
+        if (ms != UNSET) { return ms * sampleRate / 1000; }
+        return defaultFrames;
+    }
+
+    // -------------------------------
+    // ------------ Loops ------------
+    // -------------------------------
+
+    @Override
+    public void onLoop(int voiceId) {
+        audioThread.enqueue(loopRunnable);
+    }
+
+    // -------------------------------
+    // ------- Interface: PLAY -------
+    // -------------------------------
+
+    @Override
+    public void play() {
+        if (state == Yanap.STATE.LOADING) {
+            playPending = true;
+        } else if (state == Yanap.STATE.LOADED || state == Yanap.STATE.STOPPED) {
+            playPending = false;
+            double startFrame = resumePosition != UNSET ? resumePosition : (playIntro ? 0 : loopStart);
+            voiceId = MixerSoundPlayer.getEngine().getMixer().play(sound, volume1 * outputGain(), volume2 * outputGain(), startFrame, loopStart, loopEnd, this);
+            if (voiceId == 0) {
+                playFailed(); // every mixer voice is taken, the loop stays LOADED/STOPPED and can be played again
+                return;
+            }
+            stateUpdate(Yanap.STATE.PLAYING);
+        }
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return sound == null ? 0 : sound.byteSize();
+    }
+
+    @Override
+    public int getPositionMs() {
+        if (sound == null) { return -1; }
+        double position = voiceId != 0 ? MixerSoundPlayer.getEngine().getMixer().getPosition(voiceId)
+                : (resumePosition != UNSET ? resumePosition : (playIntro ? 0 : loopStart));
+        return position < 0 ? -1 : (int) (position * 1000 / sound.sampleRate);
+    }
+
+    @Override
+    public int getDurationMs() {
+        return sound == null ? -1 : (int) ((long) sound.frames * 1000 / sound.sampleRate);
+    }
+
+    // -------------------------------
+    // ------- Interface: STOP -------
+    // -------------------------------
+
+    // Pauses, the next play resumes from the same position
+    @Override
+    public void stop() {
+        playPending = false;
+        if (voiceId == 0) return;
+        Mixer mixer = MixerSoundPlayer.getEngine().getMixer();
+        resumePosition = mixer.getPosition(voiceId);
+        mixer.stop(voiceId);
+        voiceId = 0;
+        stateUpdate(Yanap.STATE.STOPPED);
+    }
+
+    // -------------------------------
+    // ---- Interface: SET VOLUME ----
+    // -------------------------------
+
+    @Override
+    public void setVolume(float volume1, float volume2) {
+        super.setVolume(volume1, volume2);
+        if (voiceId == 0) return;
+        MixerSoundPlayer.getEngine().getMixer().setVolume(voiceId, volume1 * outputGain(), volume2 * outputGain());
+    }
+
+    // -------------------------------
+    // ------ Interface: RELEASE -----
+    // -------------------------------
+
+    @Override
+    public void release() {
+        if (state == Yanap.STATE.RELEASED) return;
+
+        if (state == Yanap.STATE.LOADING) {
+            releasePending = true;
+            return;
+        }
+
+        playPending = false;
+        releasePending = false;
+
+        if (voiceId != 0) {
+            MixerSoundPlayer.getEngine().getMixer().stop(voiceId);
+            voiceId = 0;
+        }
+        sound = null;
+
+        stateUpdate(Yanap.STATE.RELEASED);
+        yanap = null;
+        uid = null;
+    }
+}
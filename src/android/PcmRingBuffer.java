@@ -0,0 +1,107 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import java.nio.ShortBuffer;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Fixed size queue of 16 bits PCM samples between one decoding thread (writer) and one playing thread (reader).
+// Both sides block: the writer while the buffer is full, the reader until a whole chunk is available.
+// Plain Java, no Android dependency.
+public class PcmRingBuffer {
+
+    private final short[] data;
+    private int readPosition = 0;
+    private int size = 0;
+    private boolean ended = false;   // the writer reached the end of the stream
+    private boolean aborted = false; // both sides give up, see abort()
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public PcmRingBuffer(int capacity) {
+        data = new short[Math.max(1, capacity)];
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    public synchronized int available() {
+        return size;
+    }
+
+    // -------------------------------
+    // ----------- Writing -----------
+    // -------------------------------
+
+    // Copies every remaining sample of `source`, waiting for the reader to make room.
+    // Returns the number of samples written, -1 if aborted.
+    public synchronized int write(ShortBuffer source) throws InterruptedException {
+        int written = 0;
+        while (source.hasRemaining()) {
+            while (size == data.length && !aborted) {
+                wait();
+            }
+            if (aborted) { return -1; }
+            int writePosition = (readPosition + size) % data.length;
+            int count = Math.min(source.remaining(), Math.min(data.length - size, data.length - writePosition));
+            source.get(data, writePosition, count);
+            size += count;
+            written += count;
+            notifyAll();
+        }
+        return written;
+    }
+
+    // No more samples will be written, the reader gets what is left then -1
+    public synchronized void end() {
+        ended = true;
+        notifyAll();
+    }
+
+    // -------------------------------
+    // ----------- Reading -----------
+    // -------------------------------
+
+    // Waits until `count` samples are available (or the end of the stream is reached) and copies them.
+    // Returns the number of samples read, -1 at the end of the stream or if aborted.
+    public synchronized int read(short[] destination, int offset, int count) throws InterruptedException {
+        while (size < count && !ended && !aborted) {
+            wait();
+        }
+        if (aborted || size == 0) { return -1; }
+        count = Math.min(count, size);
+        int first = Math.min(count, data.length - readPosition);
+        System.arraycopy(data, readPosition, destination, offset, first);
+        System.arraycopy(data, 0, destination, offset + first, count - first);
+        readPosition = (readPosition + count) % data.length;
+        size -= count;
+        notifyAll();
+        return count;
+    }
+
+    // -------------------------------
+    // ---------- Lifecycle ----------
+    // -------------------------------
+
+    // Drops the samples and the end of stream, to write the stream again from another position
+    public synchronized void clear() {
+        readPosition = 0;
+        size = 0;
+        ended = false;
+        notifyAll();
+    }
+
+    // Wakes both sides, every following read and write returns -1
+    public synchronized void abort() {
+        aborted = true;
+        notifyAll();
+    }
+}
@@ -0,0 +1,33 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Decoded 16 bits PCM samples of a sound, interleaved when stereo
+public class PcmSound {
+
+    public final short[] samples;
+    public final int channels;
+    public final int sampleRate;
+    public final int frames;
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public PcmSound(short[] samples, int channels, int sampleRate) {
+        if (channels != 1 && channels != 2) {
+            throw new IllegalArgumentException("unsupported channel count " + channels);
+        }
+        this.samples = samples;
+        this.channels = channels;
+        this.sampleRate = sampleRate;
+        this.frames = samples.length / channels;
+    }
+
+    // Approximate memory used by the samples
+    public long byteSize() {
+        return (long) samples.length * 2;
+    }
+}
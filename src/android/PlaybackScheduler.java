@@ -0,0 +1,184 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Plays and stops players at a given AudioClock time from a dedicated high priority thread, so that the timing
+// does not depend on when the bridge call arrives. The thread sleeps until shortly before the next event,
+// then yields until its exact time and hands the event over to the audio thread, ahead of its pending commands.
+public class PlaybackScheduler implements Runnable {
+
+    // Log TAG definition
+    public static final String TAG = PlaybackScheduler.class.getSimpleName();
+
+    // Actions
+    public static final int ACTION_PLAY = 0;
+    public static final int ACTION_STOP = 1;
+
+    // Constant(s)
+    final private static long SPIN_NANOS = 2000000; // the last 2ms before an event are not slept
+
+    private final AudioThread audioThread;
+    private final PriorityQueue<Event> queue = new PriorityQueue<Event>(16, new Comparator<Event>() {
+        @Override
+        public int compare(Event a, Event b) {
+            if (a.timeNanos != b.timeNanos) { return a.timeNanos < b.timeNanos ? -1 : 1; }
+            return a.order < b.order ? -1 : (a.order == b.order ? 0 : 1);
+        }
+    });
+    private long nextOrder = 0;
+    private Thread thread = null;
+    private volatile boolean running = false;
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public PlaybackScheduler(AudioThread audioThread) {
+        this.audioThread = audioThread;
+    }
+
+    // -------------------------------
+    // ------------ Event ------------
+    // -------------------------------
+
+    private static class Event implements Runnable {
+        long timeNanos;
+        long order; // events at the same time run in the order they were scheduled
+        YanapPlayer player;
+        int action;
+        int handle; // voice handle, 0 for every voice / anonymous play
+
+        // Applied on the audio thread
+        @Override
+        public void run() {
+            if (player.state == Yanap.STATE.RELEASED) { return; }
+            Metrics.scheduleLateness.record(Math.max(0, (AudioClock.nowNanos() - timeNanos) / 1000000.0));
+            if (action == ACTION_PLAY) {
+                if (handle == 0) {
+                    player.play();
+                } else {
+                    player.playVoice(handle);
+                }
+            } else {
+                if (handle == 0) {
+                    player.stop();
+                } else {
+                    player.stopVoice(handle);
+                }
+            }
+        }
+    }
+
+    // -------------------------------
+    // ---------- Lifecycle ----------
+    // -------------------------------
+
+    public synchronized void start() {
+        if (running) { return; }
+        running = true;
+        thread = new Thread(this, "YanapScheduler");
+        thread.start();
+    }
+
+    public void shutdown() {
+        Thread stopped;
+        synchronized (this) {
+            running = false;
+            queue.clear();
+            notifyAll();
+            stopped = thread;
+            thread = null;
+        }
+        if (stopped != null) {
+            try {
+                stopped.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // -------------------------------
+    // ---------- Scheduling ---------
+    // -------------------------------
+
+    // Events in the past run right away
+    public synchronized void schedule(YanapPlayer player, int action, int handle, double clockTimeMs) {
+        Event event = new Event();
+        event.timeNanos = AudioClock.toNanos(clockTimeMs);
+        event.order = nextOrder++;
+        event.player = player;
+        event.action = action;
+        event.handle = handle;
+        queue.add(event);
+        notifyAll();
+    }
+
+    // Drop every event of a player (e.g. when it is released)
+    public synchronized void cancel(YanapPlayer player) {
+        Iterator<Event> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().player == player) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // -------------------------------
+    // ------- Scheduler thread ------
+    // -------------------------------
+
+    @Override
+    public void run() {
+        Yanap.getAudioBackend().setThreadPriority(AudioBackend.PRIORITY_URGENT_AUDIO);
+        while (running) {
+            Event event = nextEvent();
+            if (event != null) {
+                audioThread.enqueueUrgent(event); // players are only touched by the audio thread
+            }
+        }
+    }
+
+    // Returns the next event once its time is reached, or null if the queue changed meanwhile
+    private Event nextEvent() {
+        Event event;
+        synchronized (this) {
+            while (running && queue.isEmpty()) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+            if (!running) { return null; }
+            event = queue.peek();
+            long delay = event.timeNanos - AudioClock.nowNanos();
+            if (delay > SPIN_NANOS) {
+                long sleep = delay - SPIN_NANOS;
+                try {
+                    wait(sleep / 1000000, (int) (sleep % 1000000));
+                } catch (InterruptedException e) {
+                    return null;
+                }
+                return null; // woken up early, or by a new event which may be due sooner
+            }
+        }
+        while (AudioClock.nowNanos() < event.timeNanos) {
+            Thread.yield();
+        }
+        synchronized (this) {
+            if (queue.peek() != event) { return null; } // cancelled, or an earlier event was added
+            return queue.poll();
+        }
+    }
+}
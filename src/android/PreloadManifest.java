@@ -0,0 +1,175 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Group of players loaded together with at most `concurrency` loads in flight. The LOADING and LOADED
+// statuses of its players are replaced by aggregated progress events and a single ready event.
+public class PreloadManifest {
+
+    // Log TAG definition
+    public static final String TAG = PreloadManifest.class.getSimpleName();
+
+    // Message types
+    public static final String MSG_PRELOAD_PROGRESS = "preloadProgress";
+    public static final String MSG_PRELOAD_READY = "preloadReady";
+
+    private final String id;
+    private final AudioLoader loader;
+    private final EventChannel events;
+    private final int concurrency;
+    private final int total;
+
+    // Players waiting for a load slot
+    private final ArrayList<YanapPlayer> queue = new ArrayList<YanapPlayer>();
+    private final ArrayList<String> queueUids = new ArrayList<String>();
+    private final ArrayList<String> queuePaths = new ArrayList<String>();
+
+    // Uids of the entries, entries given to the loader and not done yet, and entries done
+    private final HashSet<String> uids = new HashSet<String>();
+    private final HashSet<String> dispatched = new HashSet<String>();
+    private final HashSet<String> done = new HashSet<String>();
+
+    // loadNext is running: a load completing synchronously (shared sound) does not recurse into it
+    private boolean dispatching = false;
+
+    private int loaded = 0;
+    private int failed = 0;
+    private long bytes = 0;
+    private int lastPercent = -1;
+    private boolean readySent = false;
+    private final JSONObject fileLengths = new JSONObject();
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public PreloadManifest(String id, AudioLoader loader, EventChannel events, int total, int concurrency) {
+        this.id = id;
+        this.loader = loader;
+        this.events = events;
+        this.total = total;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    // -------------------------------
+    // ----------- Loading -----------
+    // -------------------------------
+
+    // Has to be called for each entry before its player is created. Returns false if `uid` is already
+    // an entry of the manifest, the duplicate then counts as failed (the first entry is loaded normally)
+    public boolean claim(String uid) {
+        synchronized (this) {
+            if (uids.add(uid)) { return true; }
+            failed++;
+        }
+        sendProgress();
+        return false;
+    }
+
+    public synchronized void add(YanapPlayer player, String uid, String filePath) {
+        queue.add(player);
+        queueUids.add(uid);
+        queuePaths.add(filePath);
+    }
+
+    public void start() {
+        if (total == 0) {
+            sendProgress();
+            return;
+        }
+        loadNext();
+    }
+
+    // Iterative: a load done synchronously ends in onLoadEnd, whose slot is taken by the next iteration
+    private void loadNext() {
+        synchronized (this) {
+            if (dispatching) { return; }
+            dispatching = true;
+        }
+        while (true) {
+            YanapPlayer player;
+            String uid, filePath;
+            synchronized (this) {
+                if (queue.isEmpty() || dispatched.size() >= concurrency) {
+                    dispatching = false;
+                    return;
+                }
+                player = queue.remove(0);
+                uid = queueUids.remove(0);
+                filePath = queuePaths.remove(0);
+                dispatched.add(uid);
+            }
+            loader.load(player, uid, filePath);
+        }
+    }
+
+    // -------------------------------
+    // ---------- Progress -----------
+    // -------------------------------
+
+    public synchronized void onFileLength(String uid, long length) {
+        bytes += length;
+        try {
+            fileLengths.put(uid, length);
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to store file length", e);
+        }
+    }
+
+    // Called when an entry reached LOADED, or failed at any point (only the first call counts)
+    public void onLoadEnd(String uid, boolean success) {
+        synchronized (this) {
+            if (!done.add(uid)) { return; }
+            dispatched.remove(uid);
+            if (success) {
+                loaded++;
+            } else {
+                failed++;
+            }
+        }
+        sendProgress();
+        loadNext();
+    }
+
+    // Progress is sent each time the loaded percentage changes, then once when every entry is done
+    private void sendProgress() {
+        JSONObject message = new JSONObject();
+        boolean ready;
+        synchronized (this) {
+            if (readySent) { return; }
+            ready = loaded + failed >= total;
+            readySent = ready;
+            int percent = total == 0 ? 100 : (loaded + failed) * 100 / total;
+            if (!ready && percent == lastPercent) { return; }
+            lastPercent = percent;
+            try {
+                message.put("manifestId", id);
+                message.put("loaded", loaded);
+                message.put("failed", failed);
+                message.put("total", total);
+                message.put("bytes", bytes);
+                if (ready) {
+                    message.put("fileLengths", fileLengths);
+                }
+            } catch (JSONException e) {
+                Log.e(TAG, "Failed to create preload progress", e);
+                return;
+            }
+        }
+        events.globalMessage(ready ? MSG_PRELOAD_READY : MSG_PRELOAD_PROGRESS, message);
+    }
+}
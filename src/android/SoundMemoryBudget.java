@@ -0,0 +1,78 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Keeps the approximate memory used by the samples of every NamedSoundPool under a budget, by unloading
+// the least recently played samples that are not playing. Evicted samples are reloaded on their next play.
+public class SoundMemoryBudget {
+
+    // Log TAG definition
+    public static final String TAG = SoundMemoryBudget.class.getSimpleName();
+
+    private static long budgetBytes = 0; // 0 means unlimited
+    private static long usedBytes = 0;
+
+    // Loaded samples, least recently played first
+    private static final LinkedHashMap<NamedSoundPool.SharedSound, Boolean> samples =
+            new LinkedHashMap<NamedSoundPool.SharedSound, Boolean>(16, 0.75f, true);
+
+    // -------------------------------
+    // -------- Configuration --------
+    // -------------------------------
+
+    public static synchronized void setBudget(long bytes) {
+        budgetBytes = Math.max(0, bytes);
+        evictIfNeeded(null);
+    }
+
+    public static synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    // -------------------------------
+    // ---------- Tracking -----------
+    // -------------------------------
+
+    static synchronized void loaded(NamedSoundPool.SharedSound sample) {
+        if (samples.put(sample, Boolean.TRUE) == null) {
+            usedBytes += sample.byteSize;
+        }
+        evictIfNeeded(sample);
+    }
+
+    static synchronized void touched(NamedSoundPool.SharedSound sample) {
+        samples.get(sample); // moves it to the most recently used end
+    }
+
+    static synchronized void unloaded(NamedSoundPool.SharedSound sample) {
+        if (samples.remove(sample) != null) {
+            usedBytes -= sample.byteSize;
+        }
+    }
+
+    // -------------------------------
+    // ---------- Eviction -----------
+    // -------------------------------
+
+    private static void evictIfNeeded(NamedSoundPool.SharedSound keep) {
+        if (budgetBytes == 0 || usedBytes <= budgetBytes) { return; }
+        long now = AudioClock.nowMillis();
+        Iterator<NamedSoundPool.SharedSound> iterator = samples.keySet().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            NamedSoundPool.SharedSound sample = iterator.next();
+            if (sample == keep || sample.isPlaying(now)) { continue; }
+            iterator.remove();
+            usedBytes -= sample.byteSize;
+            sample.pool.evict(sample);
+        }
+    }
+}
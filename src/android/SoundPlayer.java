@@ -1,16 +1,5 @@
 package cordovaPluginYanap;
 
-// -------------------------------
-// ----------- Imports -----------
-// -------------------------------
-
-import android.content.res.AssetFileDescriptor;
-import android.media.AudioManager;
-import android.media.SoundPool;
-import android.media.AudioAttributes;
-
-import java.util.HashMap;
-
 // -------------------------------
 // ------ Class description ------
 // -------------------------------
@@ -25,88 +14,104 @@ public class SoundPlayer extends YanapPlayer {
     private static final String TAG = SoundPlayer.class.getSimpleName();
 
     // Constant(s)
-    final private static int MAX_CHANNELS = 20;
+    final public static int DEFAULT_MAX_VOICES = 4;
 
-    private static SoundPool soundPool = null;
-    private static HashMap<Integer, SoundPlayer> soundIdToSoundPlayer;
+    // Priority classes, a stream is only stopped by SoundPool to make room for one of equal or higher priority
+    final public static int PRIORITY_LOW = 0;
+    final public static int PRIORITY_NORMAL = 1;
+    final public static int PRIORITY_HIGH = 2;
+    final public static int PRIORITY_CRITICAL = 3;
 
     // -------------------------------
     // ------- Local variables -------
     // -------------------------------
 
+    private NamedSoundPool pool;
+    private AudioBackend.Samples soundPool;
     private int soundId = -1;
     private int priority = 0;
-    private int streamId = 0;
+
+    // Streams currently owned by this sound, reused according to the steal policy once they are all taken
+    private Voice[] voices;
+    private int stealPolicy;
+    private long nextStartOrder = 0;
 
     private boolean playPending = false;
+    private int pendingVoice = 0;
     private boolean releasePending = false;
 
+    // -------------------------------
+    // ------------ Voice ------------
+    // -------------------------------
+
+    private static class Voice {
+        int handle = 0;   // given by JS, 0 for anonymous plays
+        int streamId = 0; // 0 when the voice is free
+        long startOrder;
+        float volume1;
+        float volume2;
+    }
+
     // -------------------------------
     // --------- Constructor ---------
     // -------------------------------
 
-    public SoundPlayer(Yanap yanap, AssetFileDescriptor afd, String uid, int priority, float volume) {
+    public SoundPlayer(Yanap yanap, String uid, NamedSoundPool pool, int priority, float volume, int maxVoices, int stealPolicy) {
         super(yanap, uid, volume);
-        if (soundPool == null) createSoundPool(MAX_CHANNELS); // only one SoundPool for all SoundPlayers
         stateUpdate(Yanap.STATE.LOADING);
+        this.pool = pool;
+        this.soundPool = pool.soundPool;
         this.priority = priority;
-
-        this.soundId = soundPool.load(afd, priority);
-        soundIdToSoundPlayer.put(this.soundId, this);
-        soundPool.setVolume(this.soundId, volume1, volume2);
+        this.stealPolicy = stealPolicy;
+        this.voices = new Voice[Math.max(1, maxVoices)];
+        for (int i = 0; i < voices.length; i++) {
+            voices[i] = new Voice();
+        }
     }
 
     // -------------------------------
-    // -- Unique SoundPool creation --
+    // ----------- Loading -----------
     // -------------------------------
 
-    protected static void createSoundPool(int maxStreams) {
-        if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.LOLLIPOP) {
-            createNewSoundPool(maxStreams);
-        } else {
-            createOldSoundPool(maxStreams);
-        }
-        soundPool.setOnLoadCompleteListener(new SoundPool.OnLoadCompleteListener() {
-            @Override
-            public void onLoadComplete(SoundPool soundPool, int soundId, int status) {
-                SoundPlayer soundPlayer = soundIdToSoundPlayer.get(soundId);
-                if (soundPlayer == null) { return; }
-                if (status != 0) {
-                    soundPlayer.stateUpdate(Yanap.STATE.ERROR, "unable to load file (status " + status + ")");
-                }
-                if (soundPlayer.state == Yanap.STATE.ERROR || soundPlayer.state == Yanap.STATE.RELEASED) {
-                    return;
-                }
-                soundPlayer.stateUpdate(Yanap.STATE.LOADED);
+    @Override
+    public boolean loadShared() {
+        return pool.share(this, filePath);
+    }
 
-                if (soundPlayer.playPending && !soundPlayer.releasePending) {
-                    soundPlayer.play();
-                }
-                if (soundPlayer.releasePending) {
-                    soundPlayer.release();
-                }
-            }
-        });
-        soundIdToSoundPlayer = new HashMap<Integer, SoundPlayer>(); // TODO: use SparseArray?
+    @Override
+    public void load(AudioBackend.Source source) {
+        pool.load(filePath, source, priority, cacheKey);
     }
 
-    // modern style declaration
-    @android.annotation.TargetApi(android.os.Build.VERSION_CODES.LOLLIPOP)
-    protected static void createNewSoundPool(int maxStreams){
-        AudioAttributes attributes = new AudioAttributes.Builder()
-                .setUsage(AudioAttributes.USAGE_GAME) // TODO: or USAGE_MEDIA...
-                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION) // TODO: or CONTENT_TYPE_MUSIC, CONTENT_TYPE_SPEECH...
-                .build();
-        soundPool = new SoundPool.Builder()
-                .setMaxStreams(maxStreams) // TODO: really required?
-                .setAudioAttributes(attributes)
-                .build();
+    @Override
+    public void loadFailed(String message) {
+        pool.loadFailed(filePath, message);
     }
 
-    // old style declaration (for compatibility)
-    @SuppressWarnings("deprecation")
-    protected static void createOldSoundPool(int maxStreams){
-        soundPool = new SoundPool(maxStreams, AudioManager.STREAM_MUSIC, 0);
+    // Called by the NamedSoundPool once the sample used by this player is loaded,
+    // `fileLength` is -1 when it has already been sent
+    void onLoadComplete(int status, int soundId, long fileLength) {
+        if (status != 0) {
+            stateUpdate(Yanap.STATE.ERROR, "unable to load file (status " + status + ")");
+        }
+        if (state == Yanap.STATE.ERROR || state == Yanap.STATE.RELEASED) {
+            return;
+        }
+        this.soundId = soundId;
+        if (state == Yanap.STATE.LOADED) {
+            return; // sample reloaded by another player after an eviction
+        }
+        if (fileLength >= 0) {
+            yanap.sendFileLength(uid, fileLength);
+        }
+        stateUpdate(Yanap.STATE.LOADED);
+
+        if (playPending && !releasePending) {
+            playVoice(pendingVoice);
+        }
+        if (releasePending) {
+            release();
+        }
     }
 
     // -------------------------------
@@ -115,38 +120,142 @@ public class SoundPlayer extends YanapPlayer {
 
     @Override
     public void play() {
+        playVoice(0);
+    }
+
+    @Override
+    public void playVoice(int handle) {
         if (state == Yanap.STATE.LOADING) {
             playPending = true;
+            pendingVoice = handle;
         } else if (state == Yanap.STATE.LOADED) {
+            if (!pool.touch(filePath)) { // evicted to save memory, reload it and play once loaded
+                stateUpdate(Yanap.STATE.LOADING);
+                playPending = true;
+                pendingVoice = handle;
+                yanap.reload(this, uid, filePath);
+                return;
+            }
             playPending = false;
-            this.streamId = soundPool.play(this.soundId, this.volume1, this.volume2, this.priority, 0, 1f);
-            if (this.streamId == 0) {
-                stateUpdate(Yanap.STATE.ERROR, "unable to play file");
+            Voice voice = selectVoice(handle);
+            int streamId = soundPool.play(this.soundId, this.volume1 * outputGain(), this.volume2 * outputGain(), this.priority);
+            if (streamId == 0) {
+                playFailed(); // every stream of the pool is used by sounds of higher priority, nothing was stolen
                 return;
             }
+            if (voice.streamId != 0) { // stolen only once the new stream plays
+                soundPool.stop(voice.streamId);
+                Metrics.stolenVoices++;
+            }
+            voice.handle = handle;
+            voice.streamId = streamId;
+            voice.startOrder = nextStartOrder++;
+            voice.volume1 = this.volume1;
+            voice.volume2 = this.volume2;
         }
     }
 
+    // Free voice, voice already using this handle, or voice to steal (its stream is still playing)
+    private Voice selectVoice(int handle) {
+        Voice candidate = null;
+        for (Voice voice : voices) {
+            if (handle != 0 && voice.streamId != 0 && voice.handle == handle) {
+                candidate = voice;
+                break;
+            }
+            if (candidate != null && candidate.streamId == 0) {
+                continue;
+            }
+            if (candidate == null || voice.streamId == 0) {
+                candidate = voice;
+            } else if (stealPolicy == Mixer.STEAL_QUIETEST) {
+                if (voice.volume1 + voice.volume2 < candidate.volume1 + candidate.volume2) { candidate = voice; }
+            } else if (voice.startOrder < candidate.startOrder) {
+                candidate = voice;
+            }
+        }
+        return candidate;
+    }
+
+    private Voice findVoice(int handle) {
+        for (Voice voice : voices) {
+            if (voice.streamId != 0 && voice.handle == handle) { return voice; }
+        }
+        return null;
+    }
+
+    // Streams owned by this sound, some may have ended on their own (SoundPool does not notify it)
+    @Override
+    public int getActiveVoices() {
+        int count = 0;
+        for (Voice voice : voices) {
+            if (voice.streamId != 0) { count++; }
+        }
+        return count;
+    }
+
     // -------------------------------
     // ------- Interface: STOP -------
     // -------------------------------
 
+    // Stop every voice
     @Override
     public void stop() {
         playPending = false;
-        if (streamId == 0) return;
-        soundPool.stop(streamId);
+        for (Voice voice : voices) {
+            if (voice.streamId != 0) {
+                soundPool.stop(voice.streamId);
+                voice.streamId = 0;
+            }
+        }
+    }
+
+    @Override
+    public void stopVoice(int handle) {
+        if (playPending && pendingVoice == handle) {
+            playPending = false;
+        }
+        Voice voice = findVoice(handle);
+        if (voice == null) return;
+        soundPool.stop(voice.streamId);
+        voice.streamId = 0;
     }
 
     // -------------------------------
     // ---- Interface: SET VOLUME ----
     // -------------------------------
 
+    // Applies to every voice and to the next plays
     @Override
     public void setVolume(float volume1, float volume2) {
         super.setVolume(volume1, volume2);
-        if (streamId == 0) return;
-        soundPool.setVolume(this.soundId, volume1, volume2);
+        for (Voice voice : voices) {
+            if (voice.streamId != 0) {
+                voice.volume1 = volume1;
+                voice.volume2 = volume2;
+                soundPool.setVolume(voice.streamId, volume1 * outputGain(), volume2 * outputGain());
+            }
+        }
+    }
+
+    // Voices keep their own volume
+    @Override
+    void onOutputGainChanged() {
+        float gain = outputGain();
+        for (Voice voice : voices) {
+            if (voice.streamId != 0) {
+                soundPool.setVolume(voice.streamId, voice.volume1 * gain, voice.volume2 * gain);
+            }
+        }
+    }
+
+    @Override
+    public void setVoiceVolume(int handle, float volume1, float volume2) {
+        Voice voice = findVoice(handle);
+        if (voice == null) return;
+        voice.volume1 = volume1;
+        voice.volume2 = volume2;
+        soundPool.setVolume(voice.streamId, volume1 * outputGain(), volume2 * outputGain());
     }
 
     // -------------------------------
@@ -157,18 +266,22 @@ public class SoundPlayer extends YanapPlayer {
     public void release() {
         if (state == Yanap.STATE.RELEASED) return;
 
+        if (state == Yanap.STATE.LOADING) {
+            releasePending = true;
+            return;
+        }
+
         playPending = false;
         releasePending = false;
 
-        soundPool.stop(this.soundId);
-        soundPool.unload(this.soundId);
-        if (soundIdToSoundPlayer.containsKey(this.soundId)) {
-            soundIdToSoundPlayer.remove(this.soundId);
+        stop();
+        if (filePath != null) {
+            pool.release(this, filePath); // the sample is unloaded with its last player
+            filePath = null;
         }
 
         soundId = -1;
         priority = 0;
-        streamId = 0;
 
         stateUpdate(Yanap.STATE.RELEASED);
         yanap = null;
@@ -0,0 +1,97 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Idle streams (MediaPlayer) kept after their player is released, so that the next MusicPlayer or LoopPlayer
+// borrows one instead of creating it. Recycled streams are reset, at most MAX_IDLE are kept and the pool
+// shrinks when the system is low on memory. Audio thread only.
+public class StreamPool {
+
+    // Log TAG definition
+    public static final String TAG = StreamPool.class.getSimpleName();
+
+    // Constant(s)
+    final private static int MAX_IDLE = 4;
+
+    private static final ArrayList<AudioBackend.Stream> idle = new ArrayList<AudioBackend.Stream>();
+    private static long hits = 0;
+    private static long misses = 0;
+
+    // -------------------------------
+    // ---------- Borrowing ----------
+    // -------------------------------
+
+    // Stream in its idle state, its listener has to be set again
+    public static AudioBackend.Stream acquire() {
+        if (!idle.isEmpty()) {
+            hits++;
+            return idle.remove(idle.size() - 1);
+        }
+        misses++;
+        return Yanap.getAudioBackend().createStream();
+    }
+
+    // The stream is reset and kept for the next player, or released if the pool is full
+    public static void recycle(AudioBackend.Stream stream) {
+        try {
+            stream.reset();
+        } catch (IllegalStateException e) {
+            Log.w(TAG, "Unable to reset stream, releasing it", e);
+            stream.release();
+            return;
+        }
+        if (idle.size() < MAX_IDLE) {
+            idle.add(stream);
+        } else {
+            stream.release();
+        }
+    }
+
+    // -------------------------------
+    // -------- Memory pressure ------
+    // -------------------------------
+
+    // Half of the idle streams are released when the application is hidden or memory starts to run low,
+    // all of them when `complete` (memory is critically low, or the application is about to be killed)
+    public static void trim(boolean complete) {
+        int keep = complete ? 0 : idle.size() / 2;
+        while (idle.size() > keep) {
+            idle.remove(idle.size() - 1).release();
+        }
+    }
+
+    public static void clear() {
+        trim(true);
+    }
+
+    // -------------------------------
+    // ---------- Statistics ---------
+    // -------------------------------
+
+    static JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("idle", idle.size());
+        json.put("hits", hits);
+        json.put("misses", misses);
+        json.put("hitRate", hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+        return json;
+    }
+
+    static void reset() {
+        hits = 0;
+        misses = 0;
+    }
+}
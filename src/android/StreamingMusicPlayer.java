@@ -0,0 +1,365 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ShortBuffer;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Music decoded while it plays, for long files: a decoding thread fills a PcmRingBuffer that a playing thread
+// drains into a streaming AudioBackend.Output. LOADED is sent as soon as the first PREBUFFER_MS are decoded, and the memory
+// used does not depend on the length of the file. Used instead of MusicPlayer with the `streaming` load option.
+public class StreamingMusicPlayer extends YanapPlayer {
+
+    // -------------------------------
+    // ----------- Statics -----------
+    // -------------------------------
+
+    // Log TAG definition
+    private static final String TAG = StreamingMusicPlayer.class.getSimpleName();
+
+    // Constant(s)
+    final private static int BUFFER_MS = 1000;   // decoded ahead of the output
+    final private static int PREBUFFER_MS = 250; // decoded before LOADED
+    final private static int FRAMES_PER_CHUNK = 1024;
+
+    // -------------------------------
+    // ------- Local variables -------
+    // -------------------------------
+
+    // Decoding thread only, once loaded
+    private AudioBackend.Decoder decoder = null;
+
+    private PcmRingBuffer ring = null;
+    private volatile int sampleRate = 0;
+    private volatile int channels = 0;
+    private int durationMs = -1;
+    private AudioBackend.Output output = null;
+
+    // Shared with the decoding and playing threads, waits and notifications go through `lock`
+    private final Object lock = new Object();
+    private volatile boolean playing = false;
+    private volatile boolean restartPending = false;
+    private volatile boolean released = false;
+    private volatile boolean ended = false; // played until the end, the next play starts over
+    private long playCount = 0; // plays so far, the playing thread detects a play landing while it reaches the end
+
+    private boolean playPending = false;
+    private boolean releasePending = false;
+
+    private final Runnable bufferedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            onBuffered();
+        }
+    };
+
+    private final Runnable endedRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (state != Yanap.STATE.PLAYING || !ended) { return; } // stopped, or restarted by a play meanwhile
+            stateUpdate(Yanap.STATE.STOPPED);
+        }
+    };
+
+    // -------------------------------
+    // --------- Constructor ---------
+    // -------------------------------
+
+    public StreamingMusicPlayer(Yanap yanap, String uid, float volume) {
+        super(yanap, uid, volume);
+        stateUpdate(Yanap.STATE.LOADING);
+        if (!PcmDecoder.isSupported()) {
+            stateUpdate(Yanap.STATE.ERROR, "streaming requires Android 5.0 or newer");
+        }
+    }
+
+    // -------------------------------
+    // ----------- Loading -----------
+    // -------------------------------
+
+    @Override
+    public boolean readsWhilePlaying() {
+        return true;
+    }
+
+    // The decoder keeps its own copy of the source
+    @Override
+    public void load(AudioBackend.Source source) {
+        try {
+            decoder = Yanap.getAudioBackend().createDecoder(source);
+            sampleRate = decoder.getSampleRate();
+            channels = decoder.getChannels();
+            if (channels > 2) {
+                throw new IOException("unsupported channel count " + channels);
+            }
+            if (decoder.getDurationUs() >= 0) {
+                durationMs = (int) (decoder.getDurationUs() / 1000);
+            }
+        } catch (IOException e) {
+            releaseDecoder();
+            postStateUpdate(Yanap.STATE.ERROR, "unable to load file (" + e.getMessage() + ")");
+            return;
+        }
+        ring = new PcmRingBuffer(sampleRate * channels * BUFFER_MS / 1000);
+        Thread decoder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                decode();
+            }
+        }, "YanapStreamDecoder");
+        decoder.start();
+    }
+
+    private void releaseDecoder() {
+        if (decoder != null) {
+            decoder.release();
+            decoder = null;
+        }
+    }
+
+    // -------------------------------
+    // ------- Decoding thread -------
+    // -------------------------------
+
+    private void decode() {
+        int prebufferSamples = sampleRate * channels * PREBUFFER_MS / 1000;
+        boolean buffered = false;
+        boolean outputDone = false;
+        try {
+            while (true) {
+                synchronized (lock) {
+                    while (!released && outputDone && !restartPending) {
+                        lock.wait();
+                    }
+                    if (released) { return; }
+                    if (restartPending) {
+                        restartPending = false;
+                        decoder.seekToStart();
+                        outputDone = false;
+                    }
+                }
+
+                ShortBuffer samples = decoder.read();
+                if (samples == null) {
+                    outputDone = true;
+                    ring.end();
+                } else if (samples.hasRemaining()) {
+                    if (decoder.getChannels() != channels || decoder.getSampleRate() != sampleRate) { // output format changed
+                        sampleRate = decoder.getSampleRate();
+                        channels = decoder.getChannels();
+                        if (channels > 2) {
+                            postStateUpdate(Yanap.STATE.ERROR, "unsupported channel count " + channels);
+                            return;
+                        }
+                    }
+                    int written = ring.write(samples);
+                    if (written < 0) { return; } // released
+                }
+                if (!buffered && (outputDone || ring.available() >= prebufferSamples)) {
+                    buffered = true;
+                    audioThread.enqueue(bufferedRunnable);
+                }
+            }
+        } catch (InterruptedException e) {
+            // released
+        } catch (IOException e) {
+            if (!released) {
+                postStateUpdate(Yanap.STATE.ERROR, "unable to decode file (" + e.getMessage() + ")");
+            }
+        } finally {
+            releaseDecoder();
+        }
+    }
+
+    // -------------------------------
+    // -------- Playing thread -------
+    // -------------------------------
+
+    private void drain(AudioBackend.Output track) {
+        Yanap.getAudioBackend().setThreadPriority(AudioBackend.PRIORITY_AUDIO);
+        short[] chunk = new short[FRAMES_PER_CHUNK * channels];
+        try {
+            while (true) {
+                long playsSeen;
+                synchronized (lock) {
+                    while (!released && !playing) {
+                        lock.wait();
+                    }
+                    if (released) { return; }
+                    playsSeen = playCount;
+                }
+                int count = ring.read(chunk, 0, chunk.length);
+                if (count < 0) {
+                    // same lock as play(), so that a play is either seen here or sees `ended`
+                    synchronized (lock) {
+                        if (released) { return; }
+                        if (playCount != playsSeen) { // played again meanwhile (e.g. stop then play): start over
+                            ring.clear();
+                            restartPending = true;
+                            lock.notifyAll();
+                            continue;
+                        }
+                        playing = false;
+                        ended = true;
+                        track.stop(); // what is already written is still played
+                    }
+                    audioThread.enqueue(endedRunnable);
+                    continue;
+                }
+                track.write(chunk, 0, count);
+            }
+        } catch (InterruptedException e) {
+            // released
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Output failure, stream stopped", e);
+        } finally {
+            track.release();
+        }
+    }
+
+    // Called on the audio thread once the first samples are decoded
+    private void onBuffered() {
+        if (state != Yanap.STATE.LOADING) { return; } // failed or released meanwhile
+
+        final AudioBackend.Output track;
+        try {
+            track = Yanap.getAudioBackend().createOutput(sampleRate, channels, FRAMES_PER_CHUNK * 2);
+        } catch (IllegalArgumentException e) {
+            stateUpdate(Yanap.STATE.ERROR, "unable to play file (" + e.getMessage() + ")");
+            return;
+        }
+        track.setVolume(volume1 * outputGain(), volume2 * outputGain());
+        output = track;
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain(track);
+            }
+        }, "YanapStream").start();
+
+        stateUpdate(Yanap.STATE.LOADED);
+        if (playPending && !releasePending) {
+            play();
+        }
+        if (releasePending) {
+            release();
+        }
+    }
+
+    @Override
+    public long getMemoryBytes() {
+        return ring == null ? 0 : (long) ring.capacity() * 2;
+    }
+
+    // Frames played by the output since the last start from the beginning
+    @Override
+    public int getPositionMs() {
+        if (output == null) { return -1; }
+        if (ended) { return durationMs; }
+        return (int) (output.getPlaybackFrames() * 1000 / sampleRate);
+    }
+
+    @Override
+    public int getDurationMs() {
+        return state == Yanap.STATE.LOADING ? -1 : durationMs;
+    }
+
+    // -------------------------------
+    // ------- Interface: PLAY -------
+    // -------------------------------
+
+    @Override
+    public void play() {
+        if (state == Yanap.STATE.LOADING) {
+            playPending = true;
+        } else if (state == Yanap.STATE.LOADED || state == Yanap.STATE.STOPPED) {
+            playPending = false;
+            synchronized (lock) {
+                if (ended) { // the decoder is idle and the buffer empty, decode again from the start
+                    ended = false;
+                    ring.clear();
+                    restartPending = true;
+                }
+                output.play();
+                playing = true;
+                playCount++;
+                lock.notifyAll();
+            }
+            stateUpdate(Yanap.STATE.PLAYING);
+        }
+    }
+
+    // -------------------------------
+    // ------- Interface: STOP -------
+    // -------------------------------
+
+    // Pauses, the next play resumes from the same position
+    @Override
+    public void stop() {
+        playPending = false;
+        if (state != Yanap.STATE.PLAYING) return;
+        playing = false;
+        output.pause();
+        stateUpdate(Yanap.STATE.STOPPED);
+    }
+
+    // -------------------------------
+    // ---- Interface: SET VOLUME ----
+    // -------------------------------
+
+    @Override
+    public void setVolume(float volume1, float volume2) {
+        super.setVolume(volume1, volume2);
+        if (output != null) {
+            output.setVolume(volume1 * outputGain(), volume2 * outputGain());
+        }
+    }
+
+    // -------------------------------
+    // ------ Interface: RELEASE -----
+    // -------------------------------
+
+    // The decoding and playing threads release the decoder and the output when they exit
+    @Override
+    public void release() {
+        if (state == Yanap.STATE.RELEASED) return;
+
+        if (state == Yanap.STATE.LOADING) {
+            releasePending = true;
+            return;
+        }
+
+        playPending = false;
+        releasePending = false;
+
+        synchronized (lock) {
+            released = true;
+            playing = false;
+            lock.notifyAll();
+        }
+        if (ring != null) {
+            ring.abort();
+        }
+        if (output != null) {
+            try {
+                output.pause(); // a write waiting for room returns
+                output.flush();
+            } catch (IllegalStateException e) {
+                // already released by the playing thread
+            }
+            output = null;
+        }
+
+        stateUpdate(Yanap.STATE.RELEASED);
+        yanap = null;
+        uid = null;
+    }
+}
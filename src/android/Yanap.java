@@ -4,32 +4,36 @@ package cordovaPluginYanap;
 // ----------- Imports -----------
 // -------------------------------
 
-import org.apache.cordova.CordovaPlugin;
-import org.apache.cordova.CallbackContext;
-import org.apache.cordova.PluginResult;
-
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.lang.reflect.Method;
-import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import android.util.Log;
-import android.content.res.AssetFileDescriptor;
-import android.os.ParcelFileDescriptor;
 
 // -------------------------------
 // ------ Class description ------
 // -------------------------------
 
-public class Yanap extends CordovaPlugin {
+// Audio engine behind the plugin: JS actions, players, events. It only talks to the platform through the AudioBackend
+// and to JS through Callbacks, YanapPlugin being the Cordova glue, so that it also runs on a plain JVM.
+public class Yanap {
 
     // Log TAG definition
     public static final String TAG = Yanap.class.getSimpleName();
 
+    // Number of files of a preload manifest loaded at the same time
+    public static final int DEFAULT_PRELOAD_CONCURRENCY = 4;
+
+    // Ints per player in a snapshot: handle, state, position, duration
+    public static final int SNAPSHOT_STRIDE = 4;
+
     // Url prefix used to indicate a file located in the package
     public static final String LOCAL_PATH_PREFIX = "file:///android_asset/";
 
@@ -45,173 +49,871 @@ public class Yanap extends CordovaPlugin {
         RELEASED  // LoopPlayer, MusicPlayer, SoundPlayer
     };
 
-    // We retain this callback to be able to emit messages to javascript at anytime
-    private CallbackContext messageChannel;
+    // Platform used by every player, pool and thread, set by YanapPlugin unless set before
+    private static volatile AudioBackend audioBackend = null;
+
+    // Result of an action sent back to JS
+    public interface Callback {
+        void success();
+        void success(JSONArray message);
+        void success(byte[] message);
+        // Result sent while keeping the callback for the next ones (message channel)
+        void keep(JSONArray message);
+    }
+
+    // Actions callable from javascript, resolved once per call instead of going through reflection
+    private static final int OP_UNKNOWN = -1;
+    private static final int OP_CREATE_AUDIO_INSTANCE = 0;
+    private static final int OP_PLAY = 1;
+    private static final int OP_STOP = 2;
+    private static final int OP_RELEASE = 3;
+    private static final int OP_SET_VOLUME = 4;
+    private static final int OP_BATCH = 5;
+    private static final int OP_MESSAGE_CHANNEL = 6;
+    private static final int OP_CONFIGURE_EVENTS = 7;
+    private static final int OP_CONFIGURE_MIXER = 8;
+    private static final int OP_CONFIGURE_SOUND_POOL = 9;
+    private static final int OP_GET_CACHE_STATS = 10;
+    private static final int OP_SET_SOUND_MEMORY_BUDGET = 11;
+    private static final int OP_PRELOAD = 12;
+    private static final int OP_FADE_TO = 13;
+    private static final int OP_CROSSFADE = 14;
+    private static final int OP_PLAY_AT = 15;
+    private static final int OP_STOP_AT = 16;
+    private static final int OP_GET_CLOCK = 17;
+    private static final int OP_GET_LEAK_STATS = 18;
+    private static final int OP_GET_METRICS = 19;
+    private static final int OP_CONFIGURE_BUS = 20;
+    private static final int OP_SET_BUS_DUCKING = 21;
+    private static final int OP_CONFIGURE_PCM_CACHE = 22;
+    private static final int OP_CLEAR_PCM_CACHE = 23;
+    private static final int OP_LOAD_ATLAS = 24;
+    private static final int OP_SNAPSHOT = 25;
+
+    private static final HashMap<String, Integer> OPCODES = new HashMap<String, Integer>();
+    static {
+        OPCODES.put("createAudioInstance", OP_CREATE_AUDIO_INSTANCE);
+        OPCODES.put("play", OP_PLAY);
+        OPCODES.put("stop", OP_STOP);
+        OPCODES.put("release", OP_RELEASE);
+        OPCODES.put("setVolume", OP_SET_VOLUME);
+        OPCODES.put("batch", OP_BATCH);
+        OPCODES.put("messageChannel", OP_MESSAGE_CHANNEL);
+        OPCODES.put("configureEvents", OP_CONFIGURE_EVENTS);
+        OPCODES.put("configureMixer", OP_CONFIGURE_MIXER);
+        OPCODES.put("configureSoundPool", OP_CONFIGURE_SOUND_POOL);
+        OPCODES.put("getCacheStats", OP_GET_CACHE_STATS);
+        OPCODES.put("setSoundMemoryBudget", OP_SET_SOUND_MEMORY_BUDGET);
+        OPCODES.put("preload", OP_PRELOAD);
+        OPCODES.put("fadeTo", OP_FADE_TO);
+        OPCODES.put("crossfade", OP_CROSSFADE);
+        OPCODES.put("playAt", OP_PLAY_AT);
+        OPCODES.put("stopAt", OP_STOP_AT);
+        OPCODES.put("getClock", OP_GET_CLOCK);
+        OPCODES.put("getLeakStats", OP_GET_LEAK_STATS);
+        OPCODES.put("getMetrics", OP_GET_METRICS);
+        OPCODES.put("configureBus", OP_CONFIGURE_BUS);
+        OPCODES.put("setBusDucking", OP_SET_BUS_DUCKING);
+        OPCODES.put("configurePcmCache", OP_CONFIGURE_PCM_CACHE);
+        OPCODES.put("clearPcmCache", OP_CLEAR_PCM_CACHE);
+        OPCODES.put("loadAtlas", OP_LOAD_ATLAS);
+        OPCODES.put("snapshot", OP_SNAPSHOT);
+    }
+
+    // Native to JS events
+    private EventChannel events;
+
+    // Collections of players, by uid and by the optional int handle given by JS (audio thread only)
+    private ConcurrentHashMap<String, YanapPlayer> yanapPlayers;
+    private IntObjectMap<YanapPlayer> playersByHandle = new IntObjectMap<YanapPlayer>();
+
+    // Thread owning the players, see AudioThread
+    private AudioThread audioThread;
+
+    // Snapshot result, reused while the number of players snapshotted does not change (audio thread only)
+    private ByteBuffer snapshotBuffer = null;
 
-    // Collections of players
-    private HashMap<String, YanapPlayer> yanapPlayers;
+    // AudioClock time at which the bridge call being run on the audio thread was received
+    private long commandReceivedNanos = 0;
+
+    // Volume ramps of fadeTo and crossfade
+    private Fader fader;
+
+    // Gain, mute and ducking shared by groups of players
+    private AudioBuses buses;
+
+    // Opens and prepares files in the background
+    private AudioLoader loader;
+
+    // Plays and stops players at an AudioClock time
+    private PlaybackScheduler scheduler;
+
+    // Application cache directory: base of the relative file paths, holds the PcmCache
+    private final File cacheDir;
+
+    // Manifest of every player being preloaded, their LOADING/LOADED statuses are not sent to JS
+    private ConcurrentHashMap<String, PreloadManifest> preloading = new ConcurrentHashMap<String, PreloadManifest>();
 
     // -------------------------------
     // --------- Constructor ---------
     // -------------------------------
 
-    public Yanap() {
-        yanapPlayers = new HashMap<String, YanapPlayer>();
+    // The audio backend has to be set before
+    public Yanap(File cacheDir) {
+        this.cacheDir = cacheDir;
+        yanapPlayers = new ConcurrentHashMap<String, YanapPlayer>();
+        audioThread = new AudioThread();
+        events = new EventChannel(audioThread);
+        fader = new Fader(audioThread);
+        buses = new AudioBuses(audioThread);
+        loader = new AudioLoader(this, cacheDir);
+        scheduler = new PlaybackScheduler(audioThread);
+        scheduler.start();
+    }
+
+    // Idle pooled streams are released when the system is low on memory, all of them when `complete`
+    public void trimMemory(final boolean complete) {
+        audioThread.enqueue(new Runnable() {
+            @Override
+            public void run() {
+                StreamPool.trim(complete);
+            }
+        });
+    }
+
+    public void destroy() {
+        scheduler.shutdown();
+        loader.shutdown();
+        audioThread.enqueue(new Runnable() {
+            @Override
+            public void run() {
+                for (YanapPlayer player : yanapPlayers.values()) {
+                    player.release(); // players still LOADING stay pending, their loads have been cancelled
+                }
+                StreamPool.clear();
+                MixerSoundPlayer.releaseEngine();
+            }
+        });
+        audioThread.quit();
+    }
+
+    public AudioThread getAudioThread() {
+        return audioThread;
+    }
+
+    public static AudioBackend getAudioBackend() {
+        return audioBackend;
+    }
+
+    // Has to be called before the plugin is created
+    public static void setAudioBackend(AudioBackend backend) {
+        audioBackend = backend;
     }
 
     // -------------------------------
     // --- Javascript entry point ----
     // -------------------------------
 
-    @Override
-    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
-        if (action.equals("createAudioInstance")) {
-            createAudioInstance(args);
-            callbackContext.success();
-        } else if (action.equals("play") || action.equals("stop") || action.equals("release")) {
-            String uid = args.getString(0);
-            arglessExec(action, uid);
-            callbackContext.success();
-        } else if (action.equals("setVolume")) {
-            setVolume(args);
-            callbackContext.success();
-        } else if (action.equals("messageChannel")) {
-            messageChannel = callbackContext;
-            // in this case we want to keep the callbackContext
-        } else {
-            return false;
+    // Only the clock and the message channel are answered on the calling thread, every other action
+    // is handed over to the audio thread which owns the players
+    public boolean execute(final String action, final JSONArray args, final Callback callback) throws JSONException {
+        final int opcode = opcode(action);
+        final long receivedNanos = AudioClock.nowNanos();
+        Metrics.bridgeCall();
+        switch (opcode) {
+            case OP_UNKNOWN:
+                return false;
+            case OP_GET_CLOCK:
+                callback.success(new JSONArray().put(AudioClock.nowMs()));
+                return true;
+            case OP_MESSAGE_CHANNEL:
+                events.setCallback(callback);
+                return true; // in this case we want to keep the callback
+            case OP_SNAPSHOT:
+                audioThread.enqueue(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.success(snapshot(args.optJSONArray(0)));
+                    }
+                });
+                return true; // answered from the audio thread
         }
+        audioThread.enqueue(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    commandReceivedNanos = receivedNanos;
+                    runCommand(action, opcode, args);
+                } catch (JSONException e) {
+                    invalidArguments(action, targetsInstance(opcode) ? args.opt(0) : null, args, e);
+                }
+            }
+        });
+        callback.success();
         return true;
     }
 
+    // Called on the audio thread
+    private void runCommand(String action, int opcode, JSONArray args) throws JSONException {
+        switch (opcode) {
+            case OP_CREATE_AUDIO_INSTANCE:
+                createAudioInstance(args);
+                break;
+            case OP_PLAY:
+            case OP_STOP:
+            case OP_RELEASE:
+            case OP_SET_VOLUME:
+            case OP_FADE_TO:
+            case OP_PLAY_AT:
+            case OP_STOP_AT:
+                playerExec(action, opcode, args.get(0), args, 1);
+                break;
+            case OP_CROSSFADE:
+                crossfade(args, 0);
+                break;
+            case OP_BATCH:
+                batch(args);
+                break;
+            case OP_CONFIGURE_EVENTS:
+                configureEvents(args);
+                break;
+            case OP_CONFIGURE_MIXER:
+                configureMixer(args);
+                break;
+            case OP_CONFIGURE_SOUND_POOL:
+                configureSoundPool(args);
+                break;
+            case OP_GET_CACHE_STATS:
+                sendCacheStats();
+                break;
+            case OP_GET_LEAK_STATS:
+                sendLeakStats();
+                break;
+            case OP_GET_METRICS:
+                sendMetrics(args.optBoolean(0, false), args.optBoolean(1, false));
+                break;
+            case OP_CONFIGURE_BUS:
+                buses.configure(args.getString(0), (float) args.getDouble(1), args.optBoolean(2, false));
+                break;
+            case OP_SET_BUS_DUCKING:
+                if (!buses.setDucking(args.getString(0), args.getString(1), (float) args.getDouble(2),
+                        args.optLong(3, 0), args.optLong(4, 0))) {
+                    Log.e(TAG, "(setBusDucking) unknown bus `" + args.getString(0) + "` or `" + args.getString(1) + "`");
+                }
+                break;
+            case OP_CONFIGURE_PCM_CACHE:
+                PcmCache.configure(cacheDir, args.getBoolean(0), args.optLong(1, PcmCache.DEFAULT_MAX_BYTES));
+                break;
+            case OP_CLEAR_PCM_CACHE:
+                PcmCache.clear(cacheDir);
+                break;
+            case OP_SET_SOUND_MEMORY_BUDGET:
+                SoundMemoryBudget.setBudget(args.getLong(0));
+                break;
+            case OP_PRELOAD:
+                preload(args);
+                break;
+            case OP_LOAD_ATLAS:
+                loadAtlas(args);
+                break;
+        }
+    }
+
+    // Actions whose first argument is the uid or the int handle of a single audio instance
+    private static boolean targetsInstance(int opcode) {
+        switch (opcode) {
+            case OP_CREATE_AUDIO_INSTANCE:
+            case OP_PLAY:
+            case OP_STOP:
+            case OP_RELEASE:
+            case OP_SET_VOLUME:
+            case OP_FADE_TO:
+            case OP_PLAY_AT:
+            case OP_STOP_AT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Arguments of a command could not be parsed, the command was not applied. The instance it targets gets an
+    // ERROR status if it does not exist (e.g. its creation failed), otherwise a global error event is sent:
+    // the instance itself is still usable.
+    private void invalidArguments(String action, Object id, JSONArray args, JSONException e) {
+        String message = "(" + action + ") invalid arguments " + args + ": " + e.getMessage();
+        Log.e(TAG, message);
+        if (id instanceof Number) {
+            int handle = ((Number) id).intValue();
+            if (handle != 0 && playersByHandle.get(handle) == null) {
+                events.statusUpdateByHandle(handle, STATE.ERROR, message);
+                return;
+            }
+        } else if (id instanceof String) {
+            if (!yanapPlayers.containsKey(id)) {
+                statusUpdate((String) id, STATE.ERROR, message);
+                return;
+            }
+        }
+        events.globalMessage(EventChannel.MSG_ERROR, message);
+    }
+
+    // Package-private for the dispatch benchmark
+    static int opcode(String action) {
+        Integer opcode = OPCODES.get(action);
+        return opcode == null ? OP_UNKNOWN : opcode;
+    }
+
     // -------------------------------
     // ---- Audio object creation ----
     // -------------------------------
 
     private void createAudioInstance(JSONArray args) throws JSONException {
         String uid = args.getString(0);
-        String audioType = args.getString(1);
         String filePath = args.getString(2);
+        YanapPlayer yanapPlayer = createPlayer(uid, args.optInt(4, 0), args.getString(1), filePath, args.optJSONObject(3));
+        if (yanapPlayer != null) {
+            loader.load(yanapPlayer, uid, filePath);
+        }
+    }
+
+    // Create and register a player in LOADING state, returns null if it cannot be created
+    private YanapPlayer createPlayer(String uid, int handle, String audioType, String filePath, JSONObject options) {
+        if (options == null) {
+            options = new JSONObject();
+        }
+
+        if (loader.isLoading(uid, filePath)) {
+            return null; // same request is already being processed, the duplicate is dropped (options included)
+        }
 
         if (yanapPlayers.containsKey(uid)) {
             statusUpdate(uid, STATE.ERROR, "uid " + uid + " already exists");
-            return;
+            return null;
         }
 
-        AssetFileDescriptor afd;
-        if (filePath.toLowerCase().startsWith(LOCAL_PATH_PREFIX)) { // apk relative path
-            try {
-                afd = cordova.getActivity().getApplicationContext().getAssets().openFd(filePath.substring(LOCAL_PATH_PREFIX.length()));
-            } catch (java.io.IOException e) {
-                statusUpdate(uid, STATE.ERROR, "unable to open file `" + filePath + "`");
-                return;
-            }
-        } else {
-            final File cacheFile;
-            if (filePath.toLowerCase().startsWith("file://")) { // full absolute path
-                cacheFile = new File(URI.create(filePath));
-            } else { // application cache relative path
-                cacheFile = new File(cordova.getActivity().getApplicationContext().getCacheDir(), filePath);
-            }
-            try {
-                afd = new AssetFileDescriptor(ParcelFileDescriptor.open(cacheFile, ParcelFileDescriptor.MODE_READ_ONLY), 0, -1);
-            } catch (java.io.FileNotFoundException e) {
-                statusUpdate(uid, STATE.ERROR, "unable to open file `" + filePath + "` at `" + cacheFile.getAbsolutePath() + "`");
-                return;
-            }
+        AudioBuses.Bus bus = options.has("bus") ? buses.get(options.optString("bus")) : buses.getDefault(audioType);
+        if (bus == null) {
+            statusUpdate(uid, STATE.ERROR, "unknown bus `" + options.optString("bus") + "`");
+            return null;
         }
 
         YanapPlayer yanapPlayer = null;
 
-        sendFileLength(uid, afd.getLength());
-
         if (audioType.equals("loop")) {
-            yanapPlayer = new LoopPlayer(this, afd, uid, 1.0f);
+            if (hasLoopRegion(options)) {
+                yanapPlayer = new PcmLoopPlayer(this, uid, 1.0f,
+                        options.optLong("loopStartSample", PcmLoopPlayer.UNSET), options.optLong("loopEndSample", PcmLoopPlayer.UNSET),
+                        options.optLong("loopStart", PcmLoopPlayer.UNSET), options.optLong("loopEnd", PcmLoopPlayer.UNSET),
+                        options.optBoolean("intro", true));
+            } else {
+                yanapPlayer = new LoopPlayer(this, uid, 1.0f);
+            }
         } else if (audioType.equals("music")) {
-            yanapPlayer = new MusicPlayer(this, afd, uid, 1.0f);
+            if (options.optBoolean("streaming", false)) {
+                yanapPlayer = new StreamingMusicPlayer(this, uid, 1.0f);
+            } else {
+                yanapPlayer = new MusicPlayer(this, uid, 1.0f);
+            }
         } else if (audioType.equals("sound")) {
-            yanapPlayer = new SoundPlayer(this, afd, uid, 1, 1.0f);
+            int maxVoices = options.optInt("maxVoices", SoundPlayer.DEFAULT_MAX_VOICES);
+            int stealPolicy = parseStealPolicy(options.optString("stealPolicy", "oldest"));
+            if (stealPolicy != Mixer.STEAL_OLDEST && stealPolicy != Mixer.STEAL_QUIETEST) {
+                statusUpdate(uid, STATE.ERROR, "unsupported stealPolicy `" + options.optString("stealPolicy") + "` for audioType `sound`");
+                return null;
+            }
+            NamedSoundPool pool = NamedSoundPool.get(options.optString("pool", NamedSoundPool.DEFAULT_POOL));
+            if (pool == null) {
+                statusUpdate(uid, STATE.ERROR, "unknown pool `" + options.optString("pool") + "`");
+                return null;
+            }
+            int priority = parsePriority(options.optString("priority", "normal"));
+            if (priority == -1) {
+                statusUpdate(uid, STATE.ERROR, "unknown priority `" + options.optString("priority") + "`");
+                return null;
+            }
+            yanapPlayer = new SoundPlayer(this, uid, pool, priority, 1.0f, maxVoices, stealPolicy);
+        } else if (audioType.equals("mixedSound")) {
+            yanapPlayer = new MixerSoundPlayer(this, uid, 1.0f);
         } else {
             statusUpdate(uid, STATE.ERROR, "unknown audioType `" + audioType + "`");
-            return;
+            return null;
         }
 
+        if (yanapPlayer.state == STATE.RELEASED) {
+            return yanapPlayer; // failed in its constructor, not loaded
+        }
+
+        // registered right away so play/stop/release can be queued while the file is loading
+        buses.attach(yanapPlayer, bus);
         yanapPlayers.put(uid, yanapPlayer);
+        if (handle != 0) {
+            yanapPlayer.handle = handle;
+            playersByHandle.put(handle, yanapPlayer);
+        }
+        return yanapPlayer;
+    }
+
+    // Looping a region requires the PCM loop player
+    private static boolean hasLoopRegion(JSONObject options) {
+        return options.has("loopStart") || options.has("loopEnd")
+                || options.has("loopStartSample") || options.has("loopEndSample");
     }
 
     // -------------------------------
-    // - Interface: ARG-LESS METHODS -
+    // ------ Interface: PRELOAD -----
     // -------------------------------
 
-    private void arglessExec(String method, String uid) throws JSONException {
-        if (yanapPlayers.containsKey(uid)) {
+    // Create every [uid, audioType, filePath, options, handle] entry of the manifest and load them `concurrency` at a time
+    private void preload(JSONArray args) throws JSONException {
+        String manifestId = args.getString(0);
+        JSONArray entries = args.getJSONArray(1);
+        int concurrency = args.optInt(2, DEFAULT_PRELOAD_CONCURRENCY);
+
+        PreloadManifest manifest = new PreloadManifest(manifestId, loader, events, entries.length(), concurrency);
+        for (int i = 0, n = entries.length(); i < n; i++) {
+            JSONArray entry = entries.getJSONArray(i);
+            String uid = entry.getString(0);
+            String filePath = entry.getString(2);
+            if (!manifest.claim(uid)) {
+                Log.e(TAG, "(preload) uid `" + uid + "` appears twice in manifest `" + manifestId + "`");
+                continue;
+            }
+            preloading.put(uid, manifest);
+            YanapPlayer yanapPlayer = createPlayer(uid, entry.optInt(4, 0), entry.getString(1), filePath, entry.optJSONObject(3));
+            if (yanapPlayer == null || yanapPlayer.state != STATE.LOADING) {
+                preloading.remove(uid);
+                manifest.onLoadEnd(uid, false);
+            } else {
+                manifest.add(yanapPlayer, uid, filePath);
+            }
+        }
+        manifest.start();
+    }
+
+    // Same as a preload manifest, its entries are [uid, audioType, name, options, handle, offset, length]
+    // sub-ranges of a single atlas file
+    private void loadAtlas(JSONArray args) throws JSONException {
+        String manifestId = args.getString(0);
+        AudioAtlas atlas = new AudioAtlas(args.getString(1));
+        JSONArray entries = args.getJSONArray(2);
+        int concurrency = args.optInt(3, DEFAULT_PRELOAD_CONCURRENCY);
+
+        PreloadManifest manifest = new PreloadManifest(manifestId, loader, events, entries.length(), concurrency);
+        for (int i = 0, n = entries.length(); i < n; i++) {
+            JSONArray entry = entries.getJSONArray(i);
+            String uid = entry.getString(0);
+            if (!manifest.claim(uid)) {
+                Log.e(TAG, "(loadAtlas) uid `" + uid + "` appears twice in atlas `" + atlas.filePath + "`");
+                continue;
+            }
+            AudioAtlas.Entry atlasEntry = atlas.add(entry.getString(2), entry.getLong(5), entry.getLong(6));
+            String filePath = atlasEntry.getPath();
+            preloading.put(uid, manifest);
+            YanapPlayer yanapPlayer = createPlayer(uid, entry.optInt(4, 0), entry.getString(1), filePath, entry.optJSONObject(3));
+            if (yanapPlayer == null || yanapPlayer.state != STATE.LOADING) {
+                atlas.done(atlasEntry);
+                preloading.remove(uid);
+                manifest.onLoadEnd(uid, false);
+            } else {
+                yanapPlayer.atlasEntry = atlasEntry;
+                manifest.add(yanapPlayer, uid, filePath);
+            }
+        }
+        manifest.start();
+    }
+
+    // Load again the file of a player which data has been unloaded (e.g. to save memory)
+    public void reload(YanapPlayer player, String uid, String filePath) {
+        loader.load(player, uid, filePath);
+    }
+
+    // -------------------------------
+    // ----- Interface: PLAYERS ------
+    // -------------------------------
+
+    // Call a player method, its arguments (if any) start at `argsOffset` in `args`
+    // `id` is the uid of the player or its int handle
+    private void playerExec(String action, int opcode, Object id, JSONArray args, int argsOffset) throws JSONException {
+        YanapPlayer player = findPlayer(action, id);
+        if (player == null) { return; }
+        try {
+            switch (opcode) {
+                case OP_PLAY:
+                    int playHandle = args.optInt(argsOffset, 0);
+                    boolean loading = player.state == STATE.LOADING;
+                    if (playHandle == 0) {
+                        player.play();
+                    } else {
+                        player.playVoice(playHandle);
+                    }
+                    player.plays++;
+                    Metrics.plays++;
+                    if (!loading) { // a pending play measures the loading time instead
+                        Metrics.playLatency.record(Metrics.elapsedMs(commandReceivedNanos));
+                    }
+                    break;
+                case OP_STOP:
+                    int stopHandle = args.optInt(argsOffset, 0);
+                    if (stopHandle == 0) {
+                        fader.cancel(player);
+                        player.stop();
+                    } else {
+                        player.stopVoice(stopHandle);
+                    }
+                    break;
+                case OP_RELEASE:
+                    fader.cancel(player);
+                    scheduler.cancel(player);
+                    player.release();
+                    break;
+                case OP_SET_VOLUME:
+                    float volume1 = (float) args.getDouble(argsOffset);
+                    float volume2 = (float) args.getDouble(argsOffset + 1);
+                    int volumeHandle = args.optInt(argsOffset + 2, 0);
+                    if (volumeHandle == 0) {
+                        fader.cancel(player);
+                        player.setVolume(volume1, volume2);
+                    } else {
+                        player.setVoiceVolume(volumeHandle, volume1, volume2);
+                    }
+                    break;
+                case OP_FADE_TO:
+                    float volume = (float) args.getDouble(argsOffset);
+                    int fadeCurve = parseCurve(args.optString(argsOffset + 2, "linear"));
+                    if (fadeCurve == -1) {
+                        Log.e(TAG, "(fadeTo) unknown curve `" + args.optString(argsOffset + 2) + "`");
+                        break;
+                    }
+                    fader.fadeTo(player, volume, volume, args.getLong(argsOffset + 1), fadeCurve);
+                    break;
+                case OP_PLAY_AT:
+                    scheduler.schedule(player, PlaybackScheduler.ACTION_PLAY, args.optInt(argsOffset + 1, 0), args.getDouble(argsOffset));
+                    break;
+                case OP_STOP_AT:
+                    scheduler.schedule(player, PlaybackScheduler.ACTION_STOP, args.optInt(argsOffset + 1, 0), args.getDouble(argsOffset));
+                    break;
+            }
+        } catch (JSONException e) {
+            throw e; // invalid arguments, the player did not fail (JSONException is unchecked in some org.json versions)
+        } catch (RuntimeException e) {
+            Log.e(TAG, "(" + action + ") audioInstance `" + id + "` failed", e);
+            if (player.state != STATE.RELEASED) {
+                player.stateUpdate(STATE.ERROR, "(" + action + ") " + e);
+            }
+        }
+    }
+
+    // Handles are looked up without hashing a string, an unknown uid is reported to JS
+    private YanapPlayer findPlayer(String action, Object id) {
+        YanapPlayer player;
+        if (id instanceof Number) {
+            int handle = ((Number) id).intValue();
+            player = playersByHandle.get(handle);
+            if (player == null) {
+                events.statusUpdateByHandle(handle, STATE.ERROR, "(" + action + ") audioInstance handle `" + handle + "` not found");
+            }
+            return player;
+        }
+        String uid = id.toString();
+        player = yanapPlayers.get(uid);
+        if (player == null) {
+            statusUpdate(uid, STATE.ERROR, "(" + action + ") audioInstance `" + uid + "` not found");
+        }
+        return player;
+    }
+
+    // -------------------------------
+    // ---- Interface: CROSSFADE -----
+    // -------------------------------
+
+    // [fromId, toId, durationMs, curve] starting at `argsOffset` in `args`, ids are uids or int handles
+    private void crossfade(JSONArray args, int argsOffset) throws JSONException {
+        YanapPlayer from = findPlayer("crossfade", args.get(argsOffset));
+        YanapPlayer to = findPlayer("crossfade", args.get(argsOffset + 1));
+        if (from == null || to == null) { return; }
+        int curve = parseCurve(args.optString(argsOffset + 3, "equalPower"));
+        if (curve == -1) {
+            Log.e(TAG, "(crossfade) unknown curve `" + args.optString(argsOffset + 3) + "`");
+            return;
+        }
+        fader.crossfade(from, to, args.getLong(argsOffset + 2), curve);
+    }
+
+    // Returns -1 for an unknown curve
+    private static int parseCurve(String curve) {
+        if (curve.equals("linear")) {
+            return Fader.CURVE_LINEAR;
+        } else if (curve.equals("equalPower")) {
+            return Fader.CURVE_EQUAL_POWER;
+        }
+        return -1;
+    }
+
+    // -------------------------------
+    // ------ Interface: BATCH -------
+    // -------------------------------
+
+    // Apply a list of [action, uid, args...] commands received in a single bridge call
+    private void batch(JSONArray args) throws JSONException {
+        JSONArray commands = args.getJSONArray(0);
+        for (int i = 0, n = commands.length(); i < n; i++) {
+            JSONArray command = commands.getJSONArray(i);
+            String action = command.getString(0);
+            int opcode = opcode(action);
             try {
-                // retrieve and call the method
-                Method m = IYanapPlayer.class.getMethod(method);
-                m.invoke(yanapPlayers.get(uid));
-            } catch (Exception e) {
-                Log.e(TAG, "Exception " + e.getClass() + ". Most likely `" + method + "` method is unknown.");
+                switch (opcode) {
+                    case OP_PLAY:
+                    case OP_STOP:
+                    case OP_RELEASE:
+                    case OP_SET_VOLUME:
+                    case OP_FADE_TO:
+                    case OP_PLAY_AT:
+                    case OP_STOP_AT:
+                        playerExec(action, opcode, command.get(1), command, 2);
+                        break;
+                    case OP_CROSSFADE:
+                        crossfade(command, 1);
+                        break;
+                    default:
+                        Log.e(TAG, "(batch) unknown action `" + action + "`");
+                }
+            } catch (JSONException e) { // the next commands of the batch still run
+                invalidArguments(action, targetsInstance(opcode) ? command.opt(1) : null, command, e);
             }
-        } else {
-            statusUpdate(uid, STATE.ERROR, "(" + method + ") audioInstance `" + uid + "` not found");
         }
     }
 
     // -------------------------------
-    // ---- Interface: SET VOLUME ----
+    // ----- Interface: SNAPSHOT -----
     // -------------------------------
 
-    private void setVolume(JSONArray args) throws JSONException {
-        String uid = args.getString(0);
-        if (yanapPlayers.containsKey(uid)) {
-            float volume1 = (float) args.getDouble(1);
-            float volume2 = (float) args.getDouble(2);
-            yanapPlayers.get(uid).setVolume(volume1, volume2);
+    // [handle, state, position ms, duration ms] little endian int32 for each player of `handles`, or for
+    // every player with a handle when null. Unknown handles are RELEASED, -1 is an unknown position or duration.
+    // Players created without a handle (uid only, e.g. by older JS code) are never reported: the snapshot
+    // identifies players by handle only, the JS instances always have one.
+    // The buffer is only reallocated when the player count changes, Cordova encodes it before returning.
+    private byte[] snapshot(JSONArray handles) {
+        int count = handles != null ? handles.length() : playersByHandle.size();
+        int bytes = count * SNAPSHOT_STRIDE * 4;
+        if (snapshotBuffer == null || snapshotBuffer.capacity() != bytes) {
+            snapshotBuffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        snapshotBuffer.clear();
+        if (handles != null) {
+            for (int i = 0; i < count; i++) {
+                int handle = handles.optInt(i);
+                putSnapshot(handle, handle == 0 ? null : playersByHandle.get(handle));
+            }
         } else {
-            statusUpdate(uid, STATE.ERROR, "(setVolume) audioInstance `" + uid + "` not found");
+            for (int slot = 0, n = playersByHandle.capacity(); slot < n; slot++) {
+                YanapPlayer player = playersByHandle.valueAt(slot);
+                if (player != null) {
+                    putSnapshot(playersByHandle.keyAt(slot), player);
+                }
+            }
+        }
+        return snapshotBuffer.array();
+    }
+
+    private void putSnapshot(int handle, YanapPlayer player) {
+        snapshotBuffer.putInt(handle);
+        if (player == null) {
+            snapshotBuffer.putInt(STATE.RELEASED.ordinal()).putInt(-1).putInt(-1);
+            return;
         }
+        snapshotBuffer.putInt(player.state.ordinal()).putInt(player.getPositionMs()).putInt(player.getDurationMs());
     }
 
     // -------------------------------
-    // ----- Native to JS events -----
+    // --- Interface: MIXER SETTINGS -
+    // -------------------------------
+
+    private void configureMixer(JSONArray args) throws JSONException {
+        int maxVoices = args.getInt(0);
+        int stealPolicy = parseStealPolicy(args.getString(1));
+        if (stealPolicy == -1) {
+            Log.e(TAG, "(configureMixer) unknown steal policy `" + args.getString(1) + "`");
+            return;
+        }
+        MixerSoundPlayer.configure(maxVoices, stealPolicy);
+    }
+
+    // Returns -1 for an unknown priority class
+    private static int parsePriority(String priority) {
+        if (priority.equals("low")) {
+            return SoundPlayer.PRIORITY_LOW;
+        } else if (priority.equals("normal")) {
+            return SoundPlayer.PRIORITY_NORMAL;
+        } else if (priority.equals("high")) {
+            return SoundPlayer.PRIORITY_HIGH;
+        } else if (priority.equals("critical")) {
+            return SoundPlayer.PRIORITY_CRITICAL;
+        }
+        return -1;
+    }
+
+    // Returns -1 for an unknown policy
+    private static int parseStealPolicy(String policy) {
+        if (policy.equals("oldest")) {
+            return Mixer.STEAL_OLDEST;
+        } else if (policy.equals("quietest")) {
+            return Mixer.STEAL_QUIETEST;
+        } else if (policy.equals("none")) {
+            return Mixer.STEAL_NONE;
+        }
+        return -1;
+    }
+
+    // -------------------------------
+    // - Interface: SOUNDPOOL SETTINGS
     // -------------------------------
 
-    // To transmit any message to javascript
-    public void transmitToJs(JSONObject message) {
-        if (messageChannel == null) { return; }
-        PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, message);
-        pluginResult.setKeepCallback(true); // we want to retain this callback forever
-        messageChannel.sendPluginResult(pluginResult);
+    private void configureSoundPool(JSONArray args) throws JSONException {
+        String name = args.getString(0);
+        JSONObject options = args.optJSONObject(1);
+        if (options == null) {
+            options = new JSONObject();
+        }
+        int maxStreams = options.optInt("maxStreams", NamedSoundPool.DEFAULT_MAX_STREAMS);
+
+        int usage = NamedSoundPool.DEFAULT_USAGE;
+        String usageName = options.optString("usage", "game");
+        if (usageName.equals("game")) {
+            usage = AudioBackend.USAGE_GAME;
+        } else if (usageName.equals("media")) {
+            usage = AudioBackend.USAGE_MEDIA;
+        } else if (usageName.equals("sonification")) {
+            usage = AudioBackend.USAGE_SONIFICATION;
+        } else {
+            Log.e(TAG, "(configureSoundPool) unknown usage `" + usageName + "`, using `game`");
+        }
+
+        int contentType = NamedSoundPool.DEFAULT_CONTENT_TYPE;
+        String contentTypeName = options.optString("contentType", "sonification");
+        if (contentTypeName.equals("sonification")) {
+            contentType = AudioBackend.CONTENT_TYPE_SONIFICATION;
+        } else if (contentTypeName.equals("music")) {
+            contentType = AudioBackend.CONTENT_TYPE_MUSIC;
+        } else if (contentTypeName.equals("speech")) {
+            contentType = AudioBackend.CONTENT_TYPE_SPEECH;
+        } else {
+            Log.e(TAG, "(configureSoundPool) unknown contentType `" + contentTypeName + "`, using `sonification`");
+        }
+
+        if (!NamedSoundPool.configure(name, maxStreams, usage, contentType)) {
+            Log.e(TAG, "(configureSoundPool) pool `" + name + "` has sounds loaded and cannot be changed");
+        }
     }
 
+    // -------------------------------
+    // ----- Native to JS events -----
+    // -------------------------------
+
     // Transmit an audio object status update to JS
     public void statusUpdate(String uid, Yanap.STATE state, String additionalInfo) {
-        JSONObject message = new JSONObject();
-        try {
-            message.put("msgType", "statusUpdate");
-            message.put("audioUid", uid);
-            message.put("newStatus", state.toString());
-            if (!additionalInfo.equals("")) {
-                message.put("additionalInfo", additionalInfo);
-            }
-            transmitToJs(message);
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to create status details", e);
-            return;
+        PreloadManifest manifest = uid == null ? null : preloading.get(uid);
+        if (manifest != null) {
+            if (state == STATE.LOADING) { return; }
+            preloading.remove(uid);
+            manifest.onLoadEnd(uid, state == STATE.LOADED);
+            if (state == STATE.LOADED) { return; }
         }
+        events.statusUpdate(uid, state, additionalInfo);
     }
 
     // Transmit the file size to JS
     public void sendFileLength(String uid, long length) {
-        JSONObject message = new JSONObject();
-        try {
-            message.put("msgType", "fileLength");
-            message.put("audioUid", uid);
-            message.put("fileLength", length);
-            transmitToJs(message);
-        } catch (JSONException e) {
-            Log.e(TAG, "Failed to send file length", e);
+        PreloadManifest manifest = preloading.get(uid);
+        if (manifest != null) {
+            manifest.onFileLength(uid, length); // sent with the manifest ready event
             return;
         }
+        events.fileLength(uid, length);
+    }
+
+    // Called by a player once RELEASED, nothing refers to it anymore
+    void onReleased(YanapPlayer player) {
+        yanapPlayers.remove(player.uid, player);
+        if (player.handle != 0 && playersByHandle.get(player.handle) == player) {
+            playersByHandle.remove(player.handle);
+        }
+        fader.cancel(player);
+        scheduler.cancel(player);
+        buses.detach(player);
+    }
+
+    // Transmit the global metrics to JS, optionally with the metrics of every player, then optionally reset them
+    private void sendMetrics(boolean withInstances, boolean reset) throws JSONException {
+        JSONObject value = Metrics.toJson();
+        int activeVoices = 0;
+        long decodedBytes = 0;
+        JSONObject instances = new JSONObject();
+        for (YanapPlayer player : yanapPlayers.values()) {
+            int voices = player.getActiveVoices();
+            long bytes = player.getMemoryBytes();
+            activeVoices += voices;
+            decodedBytes += bytes;
+            if (!withInstances) { continue; }
+            JSONObject instance = new JSONObject();
+            instance.put("state", player.state.toString());
+            instance.put("loadTime", player.loadTimeMs);
+            instance.put("plays", player.plays);
+            instance.put("failedPlays", player.failedPlays);
+            instance.put("activeVoices", voices);
+            instance.put("memoryBytes", bytes);
+            instances.put(player.uid, instance);
+        }
+        value.put("players", yanapPlayers.size());
+        value.put("activeVoices", activeVoices);
+        value.put("soundPoolBytes", SoundMemoryBudget.getUsedBytes());
+        value.put("decodedBytes", decodedBytes);
+        if (withInstances) {
+            value.put("instances", instances);
+        }
+        if (reset) {
+            Metrics.reset();
+        }
+        events.globalMessage(EventChannel.MSG_METRICS, value);
+    }
+
+    // Transmit the open and leaked resources counters to JS
+    private void sendLeakStats() throws JSONException {
+        long[] counts = LeakTracker.getCounts();
+        JSONObject value = new JSONObject();
+        value.put("openPlayers", counts[0]);
+        value.put("openFileDescriptors", counts[1]);
+        value.put("leakedPlayers", counts[2]);
+        value.put("leakedFileDescriptors", counts[3]);
+        events.globalMessage(EventChannel.MSG_LEAK_STATS, value);
+    }
+
+    // Transmit the shared sound cache counters to JS
+    private void sendCacheStats() throws JSONException {
+        long[] stats = NamedSoundPool.getCacheStats();
+        JSONObject value = new JSONObject();
+        value.put("hits", stats[0]);
+        value.put("misses", stats[1]);
+        value.put("sharedSounds", stats[2]);
+        value.put("loadedBytes", SoundMemoryBudget.getUsedBytes());
+        events.globalMessage(EventChannel.MSG_CACHE_STATS, value);
+    }
+
+    // Set how events are buffered before being sent to JS
+    private void configureEvents(JSONArray args) throws JSONException {
+        long flushInterval = args.getLong(0);
+        boolean coalesce = args.getBoolean(1);
+        EnumSet<STATE> mutedStates = EnumSet.noneOf(STATE.class);
+        JSONArray muted = args.optJSONArray(2);
+        if (muted != null) {
+            for (int i = 0, n = muted.length(); i < n; i++) {
+                try {
+                    mutedStates.add(STATE.valueOf(muted.getString(i)));
+                } catch (IllegalArgumentException e) {
+                    Log.e(TAG, "(configureEvents) unknown state `" + muted.getString(i) + "`");
+                }
+            }
+        }
+        events.flush(); // pending events are sent with the previous settings
+        events.configure(flushInterval, coalesce, mutedStates);
     }
 }
\ No newline at end of file
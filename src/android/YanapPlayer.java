@@ -1,16 +1,35 @@
 package cordovaPluginYanap;
 
+// Players are created and driven on the AudioThread, `state` is volatile so that the loader, scheduler
+// and mixer threads can read it
 abstract public class YanapPlayer implements IYanapPlayer {
-    public Yanap.STATE state = Yanap.STATE.NONE;
+    public volatile Yanap.STATE state = Yanap.STATE.NONE;
+    protected final AudioThread audioThread;
     protected Yanap yanap;
     protected String uid = null;
+    protected String filePath = null; // set by the AudioLoader
+    protected String cacheKey = null; // PcmCache entry of the file, set by the AudioLoader (null while the cache is disabled)
     protected float volume1, volume2; // TODO: rename to volumeR/volumeL
+    int handle = 0; // int handle given by JS, 0 if none
+    AudioBuses.Bus bus = null; // set by AudioBuses.attach
+    AudioAtlas.Entry atlasEntry = null; // set when the file is a sub-range of an atlas
+
+    // Metrics, audio thread only
+    long loadStartNanos = 0; // AudioClock time of the load request, 0 once LOADED
+    double loadTimeMs = -1;
+    int plays = 0;
+    int failedPlays = 0;
+
+    // Closed once RELEASED, reports the players garbage collected without having been released
+    private final LeakTracker.Token leakToken;
 
     public YanapPlayer(Yanap yanap, String uid, float volume) {
         this.yanap = yanap;
+        this.audioThread = yanap.getAudioThread();
         this.uid = uid;
         this.volume1 = volume;
         this.volume2 = volume;
+        this.leakToken = LeakTracker.track(this, LeakTracker.KIND_PLAYER, getClass().getSimpleName() + " " + uid);
     }
 
     // -------------------------------
@@ -21,9 +40,17 @@ abstract public class YanapPlayer implements IYanapPlayer {
     public void stateUpdate(Yanap.STATE status, String additionalInfo) {
         if (state == status && state == Yanap.STATE.ERROR) { return; }
         state = status;
+        if (status == Yanap.STATE.LOADED && loadStartNanos != 0) {
+            loadTimeMs = Metrics.elapsedMs(loadStartNanos);
+            Metrics.loadTime.record(loadTimeMs);
+            loadStartNanos = 0;
+        }
         yanap.statusUpdate(uid, status, additionalInfo);
         if (state == Yanap.STATE.ERROR) {
             release();
+        } else if (state == Yanap.STATE.RELEASED) {
+            LeakTracker.close(leakToken);
+            yanap.onReleased(this);
         }
     }
 
@@ -32,6 +59,89 @@ abstract public class YanapPlayer implements IYanapPlayer {
         stateUpdate(status, "");
     }
 
+    // Update state from another thread (e.g. a loader thread), applied on the audio thread
+    protected void postStateUpdate(final Yanap.STATE status, final String additionalInfo) {
+        audioThread.enqueue(new Runnable() {
+            @Override
+            public void run() {
+                if (state != Yanap.STATE.RELEASED) {
+                    stateUpdate(status, additionalInfo);
+                }
+            }
+        });
+    }
+
+    // -------------------------------
+    // ----------- Loading -----------
+    // -------------------------------
+
+    // Called by the AudioLoader on a loader thread once the file is opened, state changes have to be
+    // handed over to the audio thread. The AudioLoader closes `source` when this returns, a player needing
+    // the file afterwards has to keep its own copy (Stream, Samples and Decoder already do).
+    public abstract void load(AudioBackend.Source source);
+
+    // True for players reading the file while they play (Stream, Decoder): they get a source of their own,
+    // copies of the same open file sharing their offset
+    public boolean readsWhilePlaying() {
+        return false;
+    }
+
+    // Called by the AudioLoader on the audio thread before opening the file, returns true if the player
+    // does not need it (e.g. it shares a sound already loaded by another player)
+    public boolean loadShared() {
+        return false;
+    }
+
+    // True for players decoding the whole file to memory: the AudioLoader decodes a file once for all the
+    // PCM players loading it at the same time
+    public boolean loadsPcm() {
+        return false;
+    }
+
+    // Decoded sound of a PCM player once LOADED, null otherwise
+    PcmSound getPcmSound() {
+        return null;
+    }
+
+    // Called by the AudioLoader on the audio thread, instead of load(), with the sound decoded for another
+    // PCM player of the same file
+    void onDecoded(PcmSound decoded) {
+    }
+
+    // Called by the AudioLoader, on the audio thread, when the file cannot be opened
+    public void loadFailed(String message) {
+        stateUpdate(Yanap.STATE.ERROR, message);
+    }
+
+    // -------------------------------
+    // ----------- Metrics -----------
+    // -------------------------------
+
+    // Voices currently playing, players without polyphony have at most one
+    public int getActiveVoices() {
+        return state == Yanap.STATE.PLAYING || state == Yanap.STATE.LOOPING ? 1 : 0;
+    }
+
+    // Decoded audio kept in memory by the player itself (not by a shared SoundPool)
+    public long getMemoryBytes() {
+        return 0;
+    }
+
+    // Playback position and duration in ms for snapshots, -1 when unknown (not loaded, no position available...)
+    public int getPositionMs() {
+        return -1;
+    }
+
+    public int getDurationMs() {
+        return -1;
+    }
+
+    // No stream or voice was available to play
+    protected void playFailed() {
+        failedPlays++;
+        Metrics.failedPlays++;
+    }
+
     // -------------------------------
     // ---------- Interface ----------
     // -------------------------------
@@ -43,17 +153,34 @@ abstract public class YanapPlayer implements IYanapPlayer {
     }
 
     // -------------------------------
-    // - Garbage collector kindness --
+    // ------------ Buses ------------
     // -------------------------------
 
-    @Override
-    protected void finalize() throws Throwable {
-        try {
-            release();
-        } catch (Throwable t) {
-            throw t;
-        } finally {
-            super.finalize();
-        }
+    // Gain of the bus (and master) applied on top of the player volume when it is sent to the output
+    protected float outputGain() {
+        return bus == null ? 1f : bus.getEffectiveGain();
+    }
+
+    // Called by AudioBuses when the gain, mute or ducking of the bus changes
+    void onOutputGainChanged() {
+        setVolume(volume1, volume2);
+    }
+
+    // -------------------------------
+    // ----------- Voices ------------
+    // -------------------------------
+
+    // Players without polyphony have a single voice and ignore the handle given by JS
+
+    public void playVoice(int handle) {
+        play();
+    }
+
+    public void stopVoice(int handle) {
+        stop();
+    }
+
+    public void setVoiceVolume(int handle, float volume1, float volume2) {
+        setVolume(volume1, volume2);
     }
 }
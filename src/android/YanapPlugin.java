@@ -0,0 +1,107 @@
+package cordovaPluginYanap;
+
+// -------------------------------
+// ----------- Imports -----------
+// -------------------------------
+
+import org.apache.cordova.CordovaPlugin;
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+// -------------------------------
+// ------ Class description ------
+// -------------------------------
+
+// Cordova plugin: creates the Yanap engine on top of the AndroidAudioBackend and forwards it the JS actions,
+// the results going back through the CallbackContext of each call
+public class YanapPlugin extends CordovaPlugin {
+
+    // Log TAG definition
+    public static final String TAG = YanapPlugin.class.getSimpleName();
+
+    private Yanap yanap;
+
+    // Idle pooled streams are released when the system is low on memory
+    private final ComponentCallbacks2 memoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            yanap.trimMemory(level != ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                    && level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        }
+
+        @Override
+        public void onLowMemory() {
+            yanap.trimMemory(true);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration configuration) {
+        }
+    };
+
+    // -------------------------------
+    // ---------- Lifecycle ----------
+    // -------------------------------
+
+    @Override
+    protected void pluginInitialize() {
+        Context context = cordova.getActivity().getApplicationContext();
+        if (Yanap.getAudioBackend() == null) {
+            Yanap.setAudioBackend(new AndroidAudioBackend(context));
+        }
+        yanap = new Yanap(context.getCacheDir());
+        context.registerComponentCallbacks(memoryCallbacks);
+    }
+
+    @Override
+    public void onDestroy() {
+        cordova.getActivity().getApplicationContext().unregisterComponentCallbacks(memoryCallbacks);
+        yanap.destroy();
+    }
+
+    // -------------------------------
+    // --- Javascript entry point ----
+    // -------------------------------
+
+    @Override
+    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
+        return yanap.execute(action, args, new CordovaCallback(callbackContext));
+    }
+
+    private static class CordovaCallback implements Yanap.Callback {
+        private final CallbackContext callbackContext;
+
+        CordovaCallback(CallbackContext callbackContext) {
+            this.callbackContext = callbackContext;
+        }
+
+        @Override
+        public void success() {
+            callbackContext.success();
+        }
+
+        @Override
+        public void success(JSONArray message) {
+            callbackContext.success(message);
+        }
+
+        @Override
+        public void success(byte[] message) {
+            callbackContext.success(message);
+        }
+
+        @Override
+        public void keep(JSONArray message) {
+            PluginResult pluginResult = new PluginResult(PluginResult.Status.OK, message);
+            pluginResult.setKeepCallback(true);
+            callbackContext.sendPluginResult(pluginResult);
+        }
+    }
+}
@@ -16,13 +16,91 @@ var AUDIO_INSTANCE_STATUS = {
 var AUDIO_TYPE = {
     LOOP: 'loop',
     MUSIC: 'music',
-    SOUND: 'sound'
+    SOUND: 'sound',
+    MIXED_SOUND: 'mixedSound'
 };
 
+var PRIORITY = {
+    LOW: 'low',
+    NORMAL: 'normal',
+    HIGH: 'high',
+    CRITICAL: 'critical'
+};
+
+var STEAL_POLICY = {
+    OLDEST: 'oldest',
+    QUIETEST: 'quietest',
+    NONE: 'none'
+};
+
+var FADE_CURVE = {
+    LINEAR: 'linear',
+    EQUAL_POWER: 'equalPower'
+};
+
+var BUS = {
+    MASTER: 'master',
+    MUSIC: 'music',
+    SFX: 'sfx',
+    VOICE: 'voice'
+};
+
+// values of the state ints of a snapshot, by native state ordinal
+var SNAPSHOT_STATUS = [
+    AUDIO_INSTANCE_STATUS.EMPTY,
+    AUDIO_INSTANCE_STATUS.ERROR,
+    AUDIO_INSTANCE_STATUS.LOADING,
+    AUDIO_INSTANCE_STATUS.LOADED,
+    AUDIO_INSTANCE_STATUS.PLAYING,
+    AUDIO_INSTANCE_STATUS.LOOPING,
+    AUDIO_INSTANCE_STATUS.STOPPED,
+    AUDIO_INSTANCE_STATUS.RELEASED
+];
+
+// ints per instance in a snapshot: handle, state, position (ms), duration (ms)
+var SNAPSHOT_STRIDE = 4;
+
 var audioInstances = {};
 
+// same instances by int handle, for the native events only knowing the handle
+var audioInstancesByHandle = {};
+
+// handles given to each play() so a voice can be stopped or changed afterwards
+var lastVoiceHandle = 0;
+
+// int handle of each instance, sent instead of its uid on frequent calls (native lookup without string hashing)
+var lastInstanceHandle = 0;
+
 var init = false;
 
+// commands waiting to be sent to native in a single `batch` call
+var commandQueue = [];
+var autoBatch = false;
+var batchDepth = 0;
+var flushScheduled = false;
+
+// callbacks waiting for the native message answering a stats request, by message type
+var statsCallbacks = {
+    cacheStats: [],
+    leakStats: [],
+    metrics: []
+};
+
+// preload manifests waiting for their `preloadReady` native message
+var manifests = {};
+
+// offset between the native audio clock and the local clock, measured by syncClock()
+var clockOffset = null;
+var clockRoundTrip = Infinity;
+
+var localNow = (typeof performance !== 'undefined' && performance.now) ?
+    performance.now.bind(performance) :
+    function () { return Date.now(); };
+
+var requestFrame = (typeof window !== 'undefined' && window.requestAnimationFrame) ?
+    window.requestAnimationFrame.bind(window) :
+    function (cb) { return setTimeout(cb, 0); };
+
 function AudioInstance(audioType, onStatusUpdate) {
     if (!init) {
         init = true;
@@ -33,7 +111,10 @@ function AudioInstance(audioType, onStatusUpdate) {
     }
 
     this.uid = utils.createUUID();
+    lastInstanceHandle = lastInstanceHandle >= 0x7fffffff ? 1 : lastInstanceHandle + 1;
+    this.handle = lastInstanceHandle;
     audioInstances[this.uid] = this;
+    audioInstancesByHandle[this.handle] = this;
 
     this.audioType = audioType;
     this.onStatusUpdate = onStatusUpdate;
@@ -56,42 +137,305 @@ AudioInstance.prototype.isAlive = function (method) {
     return false;
 }
 
-AudioInstance.prototype.load = function (filePath) {
+AudioInstance.prototype.load = function (filePath, options) {
     if (!this.isAlive('load')) { return; }
     if (this.status !== AUDIO_INSTANCE_STATUS.EMPTY) {
         return console.warn('Yanap (load): available only on an audio instances in `EMPTY` state');
     }
     this.filePath = filePath;
-    exec(null, null, 'Yanap', 'createAudioInstance', [this.uid, this.audioType, filePath]);
+    flush(); // keep queued commands ordered before this one
+    exec(null, null, 'Yanap', 'createAudioInstance', [this.uid, this.audioType, filePath, options || {}, this.handle]);
 };
 
 AudioInstance.prototype.play = function () {
-    if (!this.isAlive('play')) { return; }
-    exec(null, null, 'Yanap', 'play', [this.uid]);
+    if (!this.isAlive('play')) { return 0; }
+    lastVoiceHandle = lastVoiceHandle >= 0x7fffffff ? 1 : lastVoiceHandle + 1;
+    sendCommand('play', [this.handle, lastVoiceHandle]);
+    return lastVoiceHandle;
 };
 
-AudioInstance.prototype.stop = function () {
+// without voice, every voice of the instance is stopped
+AudioInstance.prototype.stop = function (voice) {
     if (!this.isAlive('stop')) { return; }
-    exec(null, null, 'Yanap', 'stop', [this.uid]);
+    sendCommand('stop', [this.handle, voice || 0]);
+};
+
+// play at a time of the audio clock (see Yanap.getAudioTime()), returns the voice handle like play()
+AudioInstance.prototype.playAt = function (clockTimeMs) {
+    if (!this.isAlive('playAt')) { return 0; }
+    lastVoiceHandle = lastVoiceHandle >= 0x7fffffff ? 1 : lastVoiceHandle + 1;
+    sendCommand('playAt', [this.handle, clockTimeMs, lastVoiceHandle]);
+    return lastVoiceHandle;
+};
+
+// without voice, every voice of the instance is stopped
+AudioInstance.prototype.stopAt = function (clockTimeMs, voice) {
+    if (!this.isAlive('stopAt')) { return; }
+    sendCommand('stopAt', [this.handle, clockTimeMs, voice || 0]);
 };
 
 AudioInstance.prototype.release = function () {
     if (!this.isAlive('release')) { return; }
-    exec(null, null, 'Yanap', 'release', [this.uid]);
+    sendCommand('release', [this.handle]);
 };
 
-AudioInstance.prototype.setVolume = function (v1, v2) {
+// without voice, the volume applies to every voice of the instance and to the next plays
+AudioInstance.prototype.setVolume = function (v1, v2, voice) {
     if (!this.isAlive('setVolume')) { return; }
     if (v2 === undefined || v2 === null) { v2 = v1; }
-    exec(null, null, 'Yanap', 'setVolume', [this.uid, v1, v2]);
+    sendCommand('setVolume', [this.handle, v1, v2, voice || 0]);
 };
 
+// ramp the volume of the instance natively, a later setVolume(), stop() or release() cancels the fade
+AudioInstance.prototype.fadeTo = function (volume, durationMs, curve) {
+    if (!this.isAlive('fadeTo')) { return; }
+    sendCommand('fadeTo', [this.handle, volume, durationMs, curve || FADE_CURVE.LINEAR]);
+};
+
+// `to` is played and faded in up to its volume while `from` is faded out and stopped
+function crossfade(from, to, durationMs, curve) {
+    if (!from.isAlive('crossfade') || !to.isAlive('crossfade')) { return; }
+    sendCommand('crossfade', [from.handle, to.handle, durationMs, curve || FADE_CURVE.EQUAL_POWER]);
+}
+
+function sendCommand(action, args) {
+    if (batchDepth === 0 && !autoBatch) {
+        return exec(null, null, 'Yanap', action, args);
+    }
+    args.unshift(action);
+    commandQueue.push(args);
+    if (batchDepth === 0 && !flushScheduled) {
+        flushScheduled = true;
+        requestFrame(flush);
+    }
+}
+
+function flush() {
+    flushScheduled = false;
+    if (commandQueue.length === 0) { return; }
+    var commands = commandQueue;
+    commandQueue = [];
+    exec(null, null, 'Yanap', 'batch', [commands]);
+}
+
+function batch(fn) {
+    batchDepth += 1;
+    try {
+        fn();
+    } finally {
+        batchDepth -= 1;
+        if (batchDepth === 0) {
+            flush();
+        }
+    }
+}
+
+// options.flushInterval: time in ms during which native events are buffered (0 sends them right away)
+// options.coalesce: only keep the latest status of each audio instance within a flush interval
+// options.mute: list of AUDIO_INSTANCE_STATUS values that are never sent (e.g. LOOPING)
+function configureEvents(options) {
+    options = options || {};
+    var muted = [];
+    var mute = options.mute || [];
+    for (var i = 0; i < mute.length; i++) {
+        muted.push(mute[i].toUpperCase());
+    }
+    exec(null, null, 'Yanap', 'configureEvents', [options.flushInterval || 0, !!options.coalesce, muted]);
+}
+
+// settings of the software mixer used by MIXED_SOUND instances
+function configureMixer(maxVoices, stealPolicy) {
+    exec(null, null, 'Yanap', 'configureMixer', [maxVoices, stealPolicy || STEAL_POLICY.OLDEST]);
+}
+
+// create or change a bus (created under master), every instance loaded with this `bus` option follows its gain
+function configureBus(name, gain, muted) {
+    exec(null, null, 'Yanap', 'configureBus', [name, gain, !!muted]);
+}
+
+// lower `targetBus` to `gain` in attackMs while `triggerBus` plays, back in releaseMs once it stops
+// a gain of 1 removes the rule
+function setBusDucking(triggerBus, targetBus, gain, attackMs, releaseMs) {
+    exec(null, null, 'Yanap', 'setBusDucking', [triggerBus, targetBus, gain, attackMs || 0, releaseMs || 0]);
+}
+
+// create or change a named SoundPool used by SOUND instances, before loading sounds in it
+// options.maxStreams: number of streams of the pool (default 20)
+// options.usage: 'game' (default), 'media' or 'sonification'
+// options.contentType: 'sonification' (default), 'music' or 'speech'
+function configureSoundPool(name, options) {
+    exec(null, null, 'Yanap', 'configureSoundPool', [name, options || {}]);
+}
+
+// entries: list of { audioType, filePath, options, onStatusUpdate }, loaded `concurrency` at a time (default 4)
+// onProgress(progress) receives { loaded, failed, total, bytes } while loading
+// onReady(progress, audioInstances) is called once every entry is loaded or failed
+// returns the created audio instances, in the same order as the entries
+function preload(entries, concurrency, onProgress, onReady) {
+    var manifestId = utils.createUUID();
+    var instances = [];
+    var nativeEntries = [];
+    for (var i = 0; i < entries.length; i++) {
+        var entry = entries[i];
+        var ai = new AudioInstance(entry.audioType, entry.onStatusUpdate);
+        ai.filePath = entry.filePath;
+        setStatus(ai.uid, AUDIO_INSTANCE_STATUS.LOADING); // native LOADING statuses are not sent for manifests
+        instances.push(ai);
+        nativeEntries.push([ai.uid, entry.audioType, entry.filePath, entry.options || {}, ai.handle]);
+    }
+    manifests[manifestId] = { instances: instances, onProgress: onProgress, onReady: onReady };
+    flush(); // keep queued commands ordered before this one
+    exec(null, null, 'Yanap', 'preload', [manifestId, nativeEntries, concurrency || 4]);
+    return instances;
+}
+
+// filePath: atlas made of audio files packed one after the other
+// entries: list of { name, offset, length, audioType (default SOUND), options, onStatusUpdate }, offset and length in bytes
+// onProgress and onReady: same as preload(), onReady receives the audio instances by name
+// returns the created audio instances by name
+function loadAtlas(filePath, entries, onProgress, onReady) {
+    var manifestId = utils.createUUID();
+    var instances = [];
+    var instancesByName = {};
+    var nativeEntries = [];
+    for (var i = 0; i < entries.length; i++) {
+        var entry = entries[i];
+        var audioType = entry.audioType || AUDIO_TYPE.SOUND;
+        var ai = new AudioInstance(audioType, entry.onStatusUpdate);
+        ai.filePath = filePath + '#' + entry.name;
+        setStatus(ai.uid, AUDIO_INSTANCE_STATUS.LOADING); // native LOADING statuses are not sent for manifests
+        instances.push(ai);
+        instancesByName[entry.name] = ai;
+        nativeEntries.push([ai.uid, audioType, entry.name, entry.options || {}, ai.handle, entry.offset, entry.length]);
+    }
+    manifests[manifestId] = {
+        instances: instances,
+        onProgress: onProgress,
+        onReady: onReady && function (progress) {
+            onReady(progress, instancesByName);
+        }
+    };
+    flush(); // keep queued commands ordered before this one
+    exec(null, null, 'Yanap', 'loadAtlas', [manifestId, filePath, nativeEntries]);
+    return instancesByName;
+}
+
+function onPreloadMessage(msgType, progress) {
+    var manifest = manifests[progress.manifestId];
+    if (!manifest) {
+        return console.warn('Yanap (' + msgType + '): unknown manifest `' + progress.manifestId + '`');
+    }
+    if (msgType === 'preloadProgress') {
+        if (manifest.onProgress) { manifest.onProgress(progress); }
+        return;
+    }
+    delete manifests[progress.manifestId];
+    for (var i = 0; i < manifest.instances.length; i++) {
+        var ai = manifest.instances[i];
+        if (progress.fileLengths && progress.fileLengths[ai.uid] !== undefined) {
+            ai.fileLength = progress.fileLengths[ai.uid];
+        }
+        if (ai.status === AUDIO_INSTANCE_STATUS.LOADING && audioInstances[ai.uid]) {
+            setStatus(ai.uid, AUDIO_INSTANCE_STATUS.LOADED);
+        }
+    }
+    delete progress.fileLengths;
+    if (manifest.onProgress) { manifest.onProgress(progress); }
+    if (manifest.onReady) { manifest.onReady(progress, manifest.instances); }
+}
+
+// keep the approximate memory used by SOUND samples under `bytes` (0 means unlimited) by unloading
+// the least recently played ones, they are reloaded on their next play()
+function setSoundMemoryBudget(bytes) {
+    exec(null, null, 'Yanap', 'setSoundMemoryBudget', [bytes]);
+}
+
+// keep the decoded copy of the files loaded from now on in the cache dir, so that the next launches skip their decoding
+// options.enabled: false to stop using the cache (its files are kept)
+// options.maxBytes: size of the cache, least recently used files are deleted first (default 64MB)
+function configurePcmCache(options) {
+    options = options || {};
+    exec(null, null, 'Yanap', 'configurePcmCache', [options.enabled !== false, options.maxBytes || 64 * 1024 * 1024]);
+}
+
+function clearPcmCache() {
+    exec(null, null, 'Yanap', 'clearPcmCache', []);
+}
+
+// measure the offset to the native audio clock, the measure with the shortest round trip is kept
+function syncClock(callback) {
+    var sent = localNow();
+    exec(function (result) {
+        var received = localNow();
+        if (received - sent <= clockRoundTrip) {
+            clockRoundTrip = received - sent;
+            clockOffset = result[0] - (sent + received) / 2;
+        }
+        if (callback) { callback(getAudioTime()); }
+    }, null, 'Yanap', 'getClock', []);
+}
+
+// current time of the audio clock in ms without any bridge call, null until syncClock() completed once
+function getAudioTime() {
+    return clockOffset === null ? null : localNow() + clockOffset;
+}
+
+function requestStats(msgType, action, args, callback) {
+    statsCallbacks[msgType].push(callback);
+    exec(null, null, 'Yanap', action, args);
+}
+
+// callback receives { hits, misses, sharedSounds, loadedBytes } about SOUND instances samples
+function getCacheStats(callback) {
+    requestStats('cacheStats', 'getCacheStats', [], callback);
+}
+
+// callback(stats) receives { openPlayers, openFileDescriptors, leakedPlayers, leakedFileDescriptors }
+function getLeakStats(callback) {
+    requestStats('leakStats', 'getLeakStats', [], callback);
+}
+
+// callback(metrics) receives the global metrics (see README)
+// options.instances: also include the metrics of every audio instance, by uid
+// options.reset: reset the counters and histograms once read
+function getMetrics(callback, options) {
+    options = options || {};
+    requestStats('metrics', 'getMetrics', [!!options.instances, !!options.reset], callback);
+}
+
+// callback(snapshot) receives an Int32Array of SNAPSHOT_STRIDE ints per instance: handle, state (index in
+// SNAPSHOT_STATUS), position and duration in ms (-1 when unknown). Every live instance when `instances` is omitted,
+// otherwise the given instances in the same order. Only instances with a handle are reported: native players
+// created by uid only (without this API) are left out. Commands still queued by batching are not applied yet.
+function snapshot(callback, instances) {
+    var handles = null;
+    if (instances) {
+        handles = new Array(instances.length);
+        for (var i = 0; i < instances.length; i += 1) {
+            handles[i] = instances[i].handle;
+        }
+    }
+    exec(function (buffer) {
+        callback(new Int32Array(buffer));
+    }, null, 'Yanap', 'snapshot', handles ? [handles] : []);
+}
+
+function setAutoBatch(enabled) {
+    autoBatch = !!enabled;
+    if (!autoBatch) {
+        flush();
+    }
+}
+
 function cleanup(uid) {
     if (!audioInstances[uid]) {
         return console.warn('Yanap (cleanup): unknown audioInstance `' + uid + '`');
     }
     var ai = audioInstances[uid];
     delete audioInstances[uid];
+    if (audioInstancesByHandle[ai.handle] === ai) {
+        delete audioInstancesByHandle[ai.handle];
+    }
     ai.audioType = null;
     ai.filePath = null;
 }
@@ -113,35 +457,58 @@ function setStatus(uid, status, additionalInfo) {
     }
 };
 
-function onNativeMessage(msg) {
-    var audioUid = null;
-    if (msg.msgType === 'statusUpdate') {
-        audioUid = msg.audioUid;
+// native events are received as an array of [msgType, audioUid, value, additionalInfo] tuples,
+// audioUid being the int handle of a statusUpdate about an instance native does not know (anymore)
+function onNativeMessage(events) {
+    for (var i = 0; i < events.length; i++) {
+        onNativeEvent(events[i][0], events[i][1], events[i][2], events[i][3]);
+    }
+}
+
+function onNativeEvent(msgType, audioUid, value, additionalInfo) {
+    if (msgType === 'statusUpdate') {
+        if (typeof audioUid === 'number') { // instance only known by its handle (e.g. not found)
+            if (!audioInstancesByHandle[audioUid]) {
+                return console.warn('Yanap (statusUpdate, ' + value + '): unknown audioInstance handle `' + audioUid + '` ' + (additionalInfo || ''));
+            }
+            audioUid = audioInstancesByHandle[audioUid].uid;
+        }
         if (!audioInstances[audioUid]) {
-            return console.warn('Yanap (statusUpdate, ' + msg.newStatus + '): unknown audioInstance `' + audioUid + '`');
+            return console.warn('Yanap (statusUpdate, ' + value + '): unknown audioInstance `' + audioUid + '`');
         }
-        if (!AUDIO_INSTANCE_STATUS[msg.newStatus]) {
-            return console.error('unknown status code in native message: ' + JSON.stringify(msg));
+        if (!AUDIO_INSTANCE_STATUS[value]) {
+            return console.error('unknown status code in native message: ' + JSON.stringify([msgType, audioUid, value, additionalInfo]));
         }
-        setStatus(audioUid, AUDIO_INSTANCE_STATUS[msg.newStatus], msg.additionalInfo);
-        if (AUDIO_INSTANCE_STATUS[msg.newStatus] === AUDIO_INSTANCE_STATUS.RELEASED) {
+        setStatus(audioUid, AUDIO_INSTANCE_STATUS[value], additionalInfo);
+        if (AUDIO_INSTANCE_STATUS[value] === AUDIO_INSTANCE_STATUS.RELEASED) {
             cleanup(audioUid);
         }
-    } else if (msg.msgType === 'fileLength') {
-        audioUid = msg.audioUid;
+    } else if (msgType === 'fileLength') {
         if (!audioInstances[audioUid]) {
             return console.warn('Yanap (fileLength message: unknown audioInstance `' + audioUid + '`');
         }
-        audioInstances[audioUid].fileLength = msg.fileLength;
+        audioInstances[audioUid].fileLength = value;
+    } else if (msgType === 'preloadProgress' || msgType === 'preloadReady') {
+        onPreloadMessage(msgType, value);
+    } else if (msgType === 'error') { // a command native could not parse, not related to a failed instance
+        console.error('Yanap: ' + value);
+    } else if (statsCallbacks[msgType]) {
+        var callbacks = statsCallbacks[msgType];
+        statsCallbacks[msgType] = [];
+        for (var i = 0; i < callbacks.length; i++) {
+            callbacks[i](value);
+        }
     } else {
-        return console.error(new Error('Yanap (onNativeMessage): received an unknown native message: ' + JSON.stringify(msg)));
+        return console.error(new Error('Yanap (onNativeMessage): received an unknown native message: ' + JSON.stringify([msgType, audioUid, value, additionalInfo])));
     }
 }
 
 function releaseAll() {
-    for (var uid in audioInstances) {
-        audioInstances[uid].release();
-    }
+    batch(function () {
+        for (var uid in audioInstances) {
+            audioInstances[uid].release();
+        }
+    });
 }
 
 // -----------------------------
@@ -151,6 +518,12 @@ function releaseAll() {
 // constants
 exports.AUDIO_INSTANCE_STATUS = AUDIO_INSTANCE_STATUS;
 exports.AUDIO_TYPE = AUDIO_TYPE;
+exports.STEAL_POLICY = STEAL_POLICY;
+exports.PRIORITY = PRIORITY;
+exports.FADE_CURVE = FADE_CURVE;
+exports.BUS = BUS;
+exports.SNAPSHOT_STATUS = SNAPSHOT_STATUS;
+exports.SNAPSHOT_STRIDE = SNAPSHOT_STRIDE;
 
 // class
 exports.AudioInstance = AudioInstance;
@@ -159,4 +532,44 @@ exports.AudioInstance = AudioInstance;
 exports.audioInstances = audioInstances;
 
 // global cleaning
-exports.releaseAll = releaseAll;
\ No newline at end of file
+exports.releaseAll = releaseAll;
+exports.getLeakStats = getLeakStats;
+
+// instrumentation
+exports.getMetrics = getMetrics;
+exports.snapshot = snapshot;
+
+// loading
+exports.preload = preload;
+exports.loadAtlas = loadAtlas;
+
+// transitions
+exports.crossfade = crossfade;
+
+// audio clock
+exports.syncClock = syncClock;
+exports.getAudioTime = getAudioTime;
+
+// command batching
+exports.batch = batch;
+exports.setAutoBatch = setAutoBatch;
+exports.flush = flush;
+
+// native events
+exports.configureEvents = configureEvents;
+
+// software mixer
+exports.configureMixer = configureMixer;
+
+// buses
+exports.configureBus = configureBus;
+exports.setBusDucking = setBusDucking;
+
+// SoundPools
+exports.configureSoundPool = configureSoundPool;
+exports.getCacheStats = getCacheStats;
+exports.setSoundMemoryBudget = setSoundMemoryBudget;
+
+// decoded files cache
+exports.configurePcmCache = configurePcmCache;
+exports.clearPcmCache = clearPcmCache;
\ No newline at end of file